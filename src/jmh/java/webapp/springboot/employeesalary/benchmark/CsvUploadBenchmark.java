@@ -0,0 +1,93 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import webapp.springboot.employeesalary.ingest.EmployeeCsvIngestService;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and validation of an uploaded csv, everything the upload does
+ * before writing to the database. The logins are checked against a
+ * repository that knows none of them. Parallelism 0 validates with one
+ * thread per core.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class CsvUploadBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    @Param({"1", "0"})
+    private int parallelism;
+
+    private byte[] csv;
+    private EmployeeCsvIngestService ingestService;
+
+    @Setup
+    public void setUp() {
+        csv = generateCsv(rows);
+        ingestService = new EmployeeCsvIngestService();
+        ReflectionTestUtils.setField(ingestService, "repository", emptyRepository());
+        ReflectionTestUtils.setField(ingestService, "chunkSize", 1000);
+        ReflectionTestUtils.setField(ingestService, "parallelism", parallelism);
+        ingestService.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ingestService.destroy();
+    }
+
+    @Benchmark
+    public List<Employee> readAndValidate() throws IOException {
+        return ingestService.readAndValidate(new ByteArrayInputStream(csv));
+    }
+
+    static byte[] generateCsv(int rows) {
+        StringBuilder csv = new StringBuilder(rows * 48).append("id,login,name,salary,startDate\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append('e').append(i).append(",login").append(i).append(",Employee ").append(i).append(',')
+                    .append(i % 10_000).append(".50,")
+                    .append(i % 2 == 0 ? "2001-11-16" : "16-Nov-01").append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static EmployeesRepository emptyRepository() {
+        return (EmployeesRepository) Proxy.newProxyInstance(EmployeesRepository.class.getClassLoader(),
+                new Class<?>[]{EmployeesRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findIdsByLogins": return Collections.emptyMap();
+                        case "toString": return "empty EmployeesRepository";
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
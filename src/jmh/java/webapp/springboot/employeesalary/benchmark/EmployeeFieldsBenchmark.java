@@ -0,0 +1,37 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webapp.springboot.employeesalary.ingest.EmployeeFields;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a start date in each of the {@link EmployeeFields#VALID_DATE_FORMATS},
+ * and of a date in none of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeFieldsBenchmark {
+
+    @Param({"2001-11-16", "16-Nov-01", "16/11/2001"})
+    private String date;
+
+    @Benchmark
+    public LocalDate parseDate() {
+        return EmployeeFields.parseDate(date);
+    }
+}
@@ -0,0 +1,76 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import webapp.springboot.employeesalary.controller.EmployeeJsonWriter;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a single employee, as cached for GET /users/{id}, and of
+ * an employee list, as streamed for GET /users.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmployeeJsonBenchmark {
+
+    private Employee employee;
+
+    @Setup
+    public void setUp() {
+        employee = new Employee("e0001", "hpotter", "Harry \"The Boy\" Potter", 1234.5f, LocalDate.of(2001, 11, 16));
+    }
+
+    @Benchmark
+    public String employeeToJSON() {
+        return EmployeeJsonWriter.toJSON(employee);
+    }
+
+    @Benchmark
+    public void employeeListToJSON(EmployeeList list) throws IOException {
+        EmployeeJsonWriter writer = new EmployeeJsonWriter(OutputStream.nullOutputStream());
+        writer.beginList();
+        for (Employee e : list.employees) {
+            writer.element(e);
+        }
+        writer.endList();
+        writer.flush();
+    }
+
+    @State(Scope.Benchmark)
+    public static class EmployeeList {
+
+        @Param({"100", "10000"})
+        private int size;
+
+        private List<Employee> employees;
+
+        @Setup
+        public void setUp() {
+            employees = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                employees.add(new Employee("e" + i, "login" + i, "Employee " + i, i % 10_000 + 0.5f,
+                        LocalDate.of(2001, 11, 16).plusDays(i % 1000)));
+            }
+        }
+    }
+}
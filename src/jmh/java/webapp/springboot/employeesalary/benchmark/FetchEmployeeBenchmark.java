@@ -0,0 +1,106 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import webapp.springboot.employeesalary.Application;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages of GET /users against a file backed database of the given number of
+ * employees, once at the start and once in the middle of the list, by offset
+ * and by keyset, with and without the in-memory salary index. The databases
+ * are created under target/jmh on the first run and reused afterwards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class FetchEmployeeBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final int SEED_CHUNK_SIZE = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean salaryIndex;
+
+    private ConfigurableApplicationContext context;
+    private EmployeesRepository repository;
+    private Employee beforeMiddlePage;
+
+    @Setup
+    public void setUp() {
+        // arguments, because they take precedence over application.properties
+        context = new SpringApplicationBuilder(Application.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--employees.salary-index.enabled=" + salaryIndex,
+                // H2 would otherwise answer a repeated query from the result of the previous one
+                "--spring.datasource.url=jdbc:h2:file:./target/jmh/employees_" + rows + ";OPTIMIZE_REUSE_RESULTS=FALSE");
+        repository = context.getBean(EmployeesRepository.class);
+        if (repository.count() != rows) {
+            seed();
+        }
+        beforeMiddlePage = repository.fetchEmployee(0, Float.MAX_VALUE, 1, rows / 2 - 1, "name", true).get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Employee> fetchFirstPage() {
+        return repository.fetchEmployee(0, Float.MAX_VALUE, PAGE_SIZE, 0, "name", true);
+    }
+
+    @Benchmark
+    public List<Employee> fetchMiddlePageByOffset() {
+        return repository.fetchEmployee(0, Float.MAX_VALUE, PAGE_SIZE, rows / 2, "name", true);
+    }
+
+    @Benchmark
+    public List<Employee> fetchMiddlePageByKeyset() {
+        return repository.fetchEmployeeAfter(0, Float.MAX_VALUE, PAGE_SIZE, "name", true,
+                beforeMiddlePage.getName(), beforeMiddlePage.getId());
+    }
+
+    @Benchmark
+    public List<Employee> fetchSalaryRange() {
+        return repository.fetchEmployee(1000, 1100, PAGE_SIZE, 0, "salary", true);
+    }
+
+    private void seed() {
+        for (int from = 0; from < rows; from += SEED_CHUNK_SIZE) {
+            List<Employee> chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + SEED_CHUNK_SIZE, rows); i++) {
+                chunk.add(new Employee("e" + i, "login" + i, "Employee " + i, i % 10_000 + 0.5f,
+                        LocalDate.of(2001, 11, 16).plusDays(i % 1000)));
+            }
+            repository.upsertEmployees(chunk);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import webapp.springboot.employeesalary.Application;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-call overhead of small pages of GET /users: every call asks for a
+ * different offset of a small table, so that little time is spent reading
+ * rows. The repository benchmarks include the whole stack above the
+ * database, the jdbc ones compare a statement with the page inlined as
+ * literals, which H2 parses and plans for every page, with the same
+ * statement binding the page as parameters, which H2 prepares once per
+ * connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class QueryShapeBenchmark {
+
+    private static final int ROWS = 2000;
+    private static final int PAGE_SIZE = 10;
+
+    private static final String PAGE_SQL = "SELECT * FROM employees WHERE salary >= ? AND salary < ? ORDER BY salary ASC";
+
+    private ConfigurableApplicationContext context;
+    private EmployeesRepository repository;
+    private Connection connection;
+    private int offset;
+
+    @Setup
+    public void setUp() throws SQLException {
+        context = new SpringApplicationBuilder(Application.class).run(
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--spring.datasource.url=jdbc:h2:mem:query-shapes;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=64");
+        repository = context.getBean(EmployeesRepository.class);
+        List<Employee> employees = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            employees.add(new Employee("e" + i, "login" + i, "Employee " + i, i + 0.5f,
+                    LocalDate.of(2001, 11, 16).plusDays(i)));
+        }
+        repository.upsertEmployees(employees);
+        connection = context.getBean(DataSource.class).getConnection();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        context.close();
+    }
+
+    @Benchmark
+    public List<Employee> fetchPageBySalary() {
+        return repository.fetchEmployee(0, Float.MAX_VALUE, PAGE_SIZE, nextOffset(), "salary", true);
+    }
+
+    @Benchmark
+    public List<Employee> fetchPageUnsorted() {
+        return repository.fetchEmployee(0, Float.MAX_VALUE, PAGE_SIZE, nextOffset(), "", true);
+    }
+
+    @Benchmark
+    public int jdbcPageWithLiterals() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                PAGE_SQL + " LIMIT " + PAGE_SIZE + " OFFSET " + nextOffset())) {
+            return read(statement);
+        }
+    }
+
+    @Benchmark
+    public int jdbcPageWithParameters() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(PAGE_SQL + " LIMIT ? OFFSET ?")) {
+            statement.setInt(3, PAGE_SIZE);
+            statement.setInt(4, nextOffset());
+            return read(statement);
+        }
+    }
+
+    private static int read(PreparedStatement statement) throws SQLException {
+        statement.setFloat(1, 0);
+        statement.setFloat(2, Float.MAX_VALUE);
+        int rows = 0;
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * two hundred different offsets, more than the query cache of H2 holds by default
+     */
+    private int nextOffset() {
+        offset = (offset + 1) % 200;
+        return offset;
+    }
+}
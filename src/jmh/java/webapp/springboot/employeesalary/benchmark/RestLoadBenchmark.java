@@ -0,0 +1,117 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import webapp.springboot.employeesalary.Application;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the REST layer in both execution modes of
+ * {@code employees.web.execution}: 64 clients at once send GET /users/{id} of
+ * random employees, only some of them cached, and pages of GET /users at
+ * random offsets to a server with an in-memory database. Reports the
+ * requests per second and, in the sample time mode, the latency percentiles
+ * including p0.99, e.g. with
+ * <pre>
+ *   mvn -Pbenchmarks -DskipTests verify -Djmh.include=RestLoadBenchmark
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(64)
+@State(Scope.Benchmark)
+public class RestLoadBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int SEED_CHUNK_SIZE = 10_000;
+
+    @Param({"blocking", "async"})
+    private String execution;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--employees.web.execution=" + execution,
+                // a tenth of the employees fit, so that most reads go to the database
+                "--employees.cache.maximum-size=" + ROWS / 10,
+                "--spring.datasource.url=jdbc:h2:mem:rest-load-" + execution + ";DB_CLOSE_DELAY=-1");
+        seed(context.getBean(EmployeesRepository.class));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/users";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getUserById() throws IOException, InterruptedException {
+        return get("/e" + ThreadLocalRandom.current().nextInt(ROWS));
+    }
+
+    @Benchmark
+    public int fetchPage() throws IOException, InterruptedException {
+        return get("?limit=" + PAGE_SIZE + "&offset=" + ThreadLocalRandom.current().nextInt(ROWS - PAGE_SIZE)
+                + "&maxSalary=100000");
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET " + path + " answered " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private static void seed(EmployeesRepository repository) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int start = 0; start < ROWS; start += SEED_CHUNK_SIZE) {
+            List<Employee> chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+            for (int i = start; i < start + SEED_CHUNK_SIZE; i++) {
+                chunk.add(new Employee("e" + i, "login" + i, "Employee " + random.nextInt(ROWS),
+                        random.nextInt(1_000_000) / 100f, LocalDate.of(2000, 1, 1).plusDays(random.nextInt(7000))));
+            }
+            repository.upsertEmployees(chunk);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package webapp.springboot.employeesalary.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import webapp.springboot.employeesalary.Application;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a restart: every invocation starts the application in a new JVM on
+ * a file database of 100k employees, like a rolling restart does, and waits
+ * until GET /users/{id} answers, or until the salary statistics are loaded
+ * and GET /users/stats/snapshot answers, then stops it again. Compares the
+ * default configuration with the fast-start profile, e.g. with
+ * <pre>
+ *   mvn -Pbenchmarks -DskipTests verify -Djmh.include=StartupBenchmark
+ * </pre>
+ * The database is created once in target/startup-benchmark and reused.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int SEED_CHUNK_SIZE = 10_000;
+    private static final Path DATABASE = Paths.get("target", "startup-benchmark", "employees_db");
+
+    @Param({"default", "fast-start"})
+    private String profile;
+
+    private HttpClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!Files.exists(Paths.get(DATABASE + ".mv.db"))) {
+            Files.createDirectories(DATABASE.getParent());
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class).run(
+                    "--spring.main.web-application-type=none",
+                    "--spring.main.banner-mode=off",
+                    "--logging.level.root=warn",
+                    "--spring.datasource.url=" + databaseUrl())) {
+                seed(context.getBean(EmployeesRepository.class));
+            }
+        }
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1)).build();
+    }
+
+    @Benchmark
+    public int startUntilFirstRequest() throws IOException, InterruptedException {
+        return startAndAwait("/users/e1");
+    }
+
+    @Benchmark
+    public int startUntilStatisticsLoaded() throws IOException, InterruptedException {
+        return startAndAwait("/users/stats/snapshot");
+    }
+
+    private int startAndAwait(String path) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Application.class.getName(),
+                "--server.port=" + port,
+                "--spring.profiles.active=" + profile,
+                "--spring.datasource.url=" + databaseUrl()));
+        Process application = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build();
+            while (true) {
+                if (!application.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + application.exitValue());
+                }
+                try {
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() == 200) {
+                        return response.body().length;
+                    }
+                }
+                catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            application.destroy();
+            application.waitFor();
+        }
+    }
+
+    private static String databaseUrl() {
+        return "jdbc:h2:file:" + DATABASE.toAbsolutePath().toString().replace(File.separatorChar, '/')
+                + ";QUERY_CACHE_SIZE=64";
+    }
+
+    private static void seed(EmployeesRepository repository) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int start = 0; start < ROWS; start += SEED_CHUNK_SIZE) {
+            List<Employee> chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+            for (int i = start; i < start + SEED_CHUNK_SIZE; i++) {
+                chunk.add(new Employee("e" + i, "login" + i, "Employee " + random.nextInt(ROWS),
+                        random.nextInt(1_000_000) / 100f, LocalDate.of(2000, 1, 1).plusDays(random.nextInt(7000))));
+            }
+            repository.upsertEmployees(chunk);
+        }
+    }
+}
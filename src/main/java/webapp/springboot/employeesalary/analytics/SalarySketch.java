@@ -0,0 +1,98 @@
+package webapp.springboot.employeesalary.analytics;
+
+/**
+ * Quantile sketch of salaries with a relative accuracy of 1%, after the
+ * DDSketch algorithm: every salary is counted in a logarithmically sized
+ * bucket, so any quantile is off by at most 1% of its value. Because a
+ * sketch is just bucket counts, salaries can be removed as well as added,
+ * and two sketches are merged by adding their counts.
+ * <p>
+ * Salaries below 0.01 are counted as 0, those above the largest float in
+ * the last bucket. Not thread safe.
+ */
+public class SalarySketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_INDEXED_VALUE = 0.01;
+    private static final int MIN_INDEX = index(MIN_INDEXED_VALUE);
+    private static final int BUCKETS = index(Float.MAX_VALUE) - MIN_INDEX + 1;
+    private static final int MAX_INDEX = MIN_INDEX + BUCKETS - 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long zeroCount;
+    private long count;
+
+    public void add(double salary) {
+        update(salary, 1);
+    }
+
+    /**
+     * removes a salary that was added before
+     */
+    public void remove(double salary) {
+        update(salary, -1);
+    }
+
+    /**
+     * adds all salaries of another sketch to this one
+     */
+    public void merge(SalarySketch other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param fraction the quantile as a fraction in [0, 1]
+     * @return the approximate quantile, {@literal null} if the sketch is empty
+     */
+    public Double quantile(double fraction) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.round(fraction * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0.0;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return value(i + MIN_INDEX);
+            }
+        }
+        return value(MAX_INDEX);
+    }
+
+    private void update(double salary, long delta) {
+        count += delta;
+        if (salary < MIN_INDEXED_VALUE) {
+            zeroCount += delta;
+        }
+        else {
+            counts[Math.max(MIN_INDEX, Math.min(index(salary), MAX_INDEX)) - MIN_INDEX] += delta;
+        }
+    }
+
+    /**
+     * bucket i holds the values in (GAMMA^(i-1), GAMMA^i]
+     */
+    private static int index(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    /**
+     * the value within 1% of every value of bucket i
+     */
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+}
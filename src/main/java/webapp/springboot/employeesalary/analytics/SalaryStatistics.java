@@ -0,0 +1,183 @@
+package webapp.springboot.employeesalary.analytics;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeReadModel;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.PreparedStatement;
+
+/**
+ * Salary statistics of the whole employees table kept in memory: running
+ * count, sum and sum of squares plus a {@link SalarySketch} for quantiles.
+ * The sums are kept as {@link BigDecimal}s, every float salary and its square
+ * is exact in them, so they do not drift however many salaries are added
+ * and removed. Salaries that are not finite, which only rows from before
+ * they were rejected can have, are left out of all statistics.
+ * They are built from the database once at startup, see {@link EmployeeReadModel},
+ * and afterwards updated incrementally from the old and new salary of every
+ * committed write, so reading them never touches the database.
+ */
+@Component
+@Lazy(false)
+public class SalaryStatistics implements InitializingBean, EmployeeReadModel {
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${employees.warm-up.background:false}")
+    private boolean loadInBackground;
+
+    private volatile boolean loaded;
+
+    private long count;
+    private BigDecimal sum = BigDecimal.ZERO;
+    private BigDecimal sumOfSquares = BigDecimal.ZERO;
+    private SalarySketch sketch = new SalarySketch();
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!loadInBackground) {
+            rebuild();
+        }
+    }
+
+    /**
+     * recomputes the statistics from all salaries in the database, read from
+     * the table itself rather than through a salary range or another read model
+     */
+    @Override
+    public void rebuild() {
+        SalarySketch rebuilt = new SalarySketch();
+        BigDecimal[] sums = {BigDecimal.ZERO, BigDecimal.ZERO};
+        jdbc.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT salary FROM employees");
+            statement.setFetchSize(LOAD_FETCH_SIZE);
+            return statement;
+        }, row -> {
+            float salary = row.getFloat(1);
+            if (!Float.isFinite(salary)) {
+                return;
+            }
+            rebuilt.add(salary);
+            sums[0] = sums[0].add(new BigDecimal(salary));
+            sums[1] = sums[1].add(new BigDecimal((double) salary * salary));
+        });
+        synchronized (this) {
+            sketch = rebuilt;
+            count = rebuilt.getCount();
+            sum = sums[0];
+            sumOfSquares = sums[1];
+        }
+        loaded = true;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public synchronized void onEmployeesChanged(EmployeesChangedEvent event) {
+        if (!loaded) {
+            return; // loading sees the write
+        }
+        else if (!event.isListed()) {
+            rebuild();
+            return;
+        }
+        for (EmployeeChange change : event.getChanges()) {
+            if (null != change.getBefore()) {
+                remove(change.getBefore().getSalary());
+            }
+            if (null != change.getAfter()) {
+                add(change.getAfter().getSalary());
+            }
+        }
+    }
+
+    /**
+     * @param fractions quantiles to include, as fractions in [0, 1]
+     * @return the current statistics
+     */
+    public synchronized Snapshot snapshot(double... fractions) {
+        Double[] quantiles = new Double[fractions.length];
+        for (int i = 0; i < fractions.length; i++) {
+            quantiles[i] = sketch.quantile(fractions[i]);
+        }
+        return new Snapshot(new SalarySummary(count, sum.doubleValue(), sketch.quantile(0), sketch.quantile(1)),
+                count == 0 ? null : Math.sqrt(variance()), quantiles);
+    }
+
+    /**
+     * @return (count * sumOfSquares - sum * sum) / count^2, exact up to the division
+     */
+    private double variance() {
+        BigDecimal n = BigDecimal.valueOf(count);
+        BigDecimal squaredDeviations = sumOfSquares.multiply(n).subtract(sum.multiply(sum));
+        return Math.max(squaredDeviations.divide(n.multiply(n), MathContext.DECIMAL64).doubleValue(), 0);
+    }
+
+    private void add(float salary) {
+        if (!Float.isFinite(salary)) {
+            return;
+        }
+        count++;
+        sum = sum.add(new BigDecimal(salary));
+        sumOfSquares = sumOfSquares.add(new BigDecimal((double) salary * salary));
+        sketch.add(salary);
+    }
+
+    private void remove(float salary) {
+        if (!Float.isFinite(salary)) {
+            return;
+        }
+        count--;
+        sum = sum.subtract(new BigDecimal(salary));
+        sumOfSquares = sumOfSquares.subtract(new BigDecimal((double) salary * salary));
+        sketch.remove(salary);
+    }
+
+    /**
+     * Statistics at one point in time. Count is exact, sum, mean and standard
+     * deviation are computed from exact sums and only rounded once, min, max
+     * and the quantiles are within 1% of the exact value.
+     */
+    public static class Snapshot {
+
+        private final SalarySummary summary;
+        private final Double standardDeviation;
+        private final Double[] quantiles;
+
+        Snapshot(SalarySummary summary, Double standardDeviation, Double[] quantiles) {
+            this.summary = summary;
+            this.standardDeviation = standardDeviation;
+            this.quantiles = quantiles;
+        }
+
+        public SalarySummary getSummary() {
+            return summary;
+        }
+
+        public Double getStandardDeviation() {
+            return standardDeviation;
+        }
+
+        /**
+         * @return the quantiles in the order they were requested
+         */
+        public Double[] getQuantiles() {
+            return quantiles;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package webapp.springboot.employeesalary.analytics;
+
+/**
+ * Aggregates of the salaries of a set of employees. Minimum, maximum
+ * and mean are {@literal null} if the set is empty.
+ */
+public class SalarySummary {
+
+    private final long count;
+    private final double sum;
+    private final Double min;
+    private final Double max;
+
+    public SalarySummary(long count, double sum, Double min, Double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public Double getMean() {
+        return count == 0 ? null : sum / count;
+    }
+
+    /**
+     * @return the summary as a JSON object
+     */
+    public String toJSON() {
+        return "{\"count\":"+count+"," +
+                "\"sum\":"+sum+"," +
+                "\"min\":"+min+"," +
+                "\"max\":"+max+"," +
+                "\"mean\":"+getMean()+"}";
+    }
+}
@@ -0,0 +1,78 @@
+package webapp.springboot.employeesalary.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of the serialized JSON of single employees, keyed by
+ * employee id. It holds at most {@code employees.cache.maximum-size} entries
+ * for {@code employees.cache.ttl-seconds} each.
+ * <p>
+ * Every committed write of an employee invalidates its id through the
+ * {@link EmployeesChangedEvent}, one that does not list its changes
+ * invalidates every id. An invalidation waits for a load of the same
+ * id that is in flight, so a value read before the write can not outlive it.
+ */
+@Component
+public class EmployeeJsonCache {
+
+    private final Cache<String,String> cache;
+
+    public EmployeeJsonCache(@Value("${employees.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${employees.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param id the employee id
+     * @param loader serializes the employee, returns {@literal null} if it does not exist
+     * @return the JSON of the employee or {@literal null} if it does not exist
+     */
+    public String get(String id, Function<String,String> loader) {
+        return cache.get(id, loader);
+    }
+
+    /**
+     * @param id the employee id
+     * @return the JSON of the employee if it is cached, {@literal null} otherwise, without counting a hit or miss
+     */
+    public String peek(String id) {
+        return cache.asMap().get(id);
+    }
+
+    @TransactionalEventListener
+    public void onEmployeesChanged(EmployeesChangedEvent event) {
+        if (!event.isListed()) {
+            cache.invalidateAll();
+            return;
+        }
+        event.getChanges().forEach(change -> cache.invalidate(change.getId()));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit, miss and eviction counters since startup
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,64 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Controller for getting a single employee under http://<web address?/users/{id}
+ * with {@code employees.web.execution=async}, see {@link AsyncExecutionConfiguration}.
+ * Answers the same as {@link EmployeeLookupController}.
+ */
+@RestController
+@RequestMapping("/users")
+@ConditionalOnProperty(name = "employees.web.execution", havingValue = "async")
+public class AsyncEmployeeLookupController {
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private EmployeeJsonCache cache; // JSON of single employees, invalidated on every write
+
+    @Autowired
+    @Qualifier("handlerExecutor")
+    private Executor executor;
+
+    /**
+     * Get a single employee with the employee id given, like
+     * {@link EmployeeLookupController#getUserById}. A cached employee is answered
+     * by the request thread, otherwise the employee is read on a thread of the
+     * {@code handlerExecutor}. Status code 503 is returned if too many requests
+     * wait for one.
+     *
+     * @param id the employee id the search
+     * @return http response, when it is read
+     */
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<String>> getUserById(@PathVariable("id") String id) {
+        if (null != cache.peek(id)) {
+            // counted as a hit, and only loaded here if it was evicted right now
+            return CompletableFuture.completedFuture(EmployeeLookupController.lookup(repository, cache, id));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> EmployeeLookupController.lookup(repository, cache, id), executor);
+        }
+        catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(EmployeeLookupController.createSimpleJSONResponse(
+                    SERVICE_UNAVAILABLE, "Too many requests in progress, try again later"));
+        }
+    }
+}
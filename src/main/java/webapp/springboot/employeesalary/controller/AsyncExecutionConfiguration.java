@@ -0,0 +1,90 @@
+package webapp.springboot.employeesalary.controller;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The asynchronous execution mode of the read endpoints, selected with
+ * {@code employees.web.execution=async}. By default ({@code blocking}) a
+ * request thread of Tomcat runs the handler and waits for the database
+ * itself, so a burst of requests holds up to all of them, most only waiting
+ * for a connection of the pool.
+ * <p>
+ * In the asynchronous mode the request thread only parses the request and
+ * answers from the {@link webapp.springboot.employeesalary.cache.EmployeeJsonCache}
+ * if it can. Work that needs the database is handed to the
+ * {@code handlerExecutor}, which has one thread per connection, so that its
+ * threads never wait for the pool either, and the request thread is released
+ * at once. At most {@code employees.web.async.queue-capacity} requests wait
+ * for a thread, more are answered with status code 503. The streamed
+ * employee lists run on the same threads instead of the shared task executor
+ * of Spring MVC. The thread pool is watched in the {@code executor.*} meters
+ * of {@code web.async}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "employees.web.execution", havingValue = "async")
+public class AsyncExecutionConfiguration implements WebMvcConfigurer {
+
+    private static final int DEFAULT_THREADS = 10;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads the threads running handlers, 0 for one per connection of the pool
+     * @param queueCapacity the requests waiting for a thread at most
+     */
+    public AsyncExecutionConfiguration(ObjectProvider<DataSource> dataSource,
+                                       @Value("${employees.web.async.threads:0}") int threads,
+                                       @Value("${employees.web.async.queue-capacity:1000}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : connectionPoolSize(dataSource.getIfAvailable());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "handler-" + threadNumber.incrementAndGet()));
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor handlerExecutor() {
+        new ExecutorServiceMetrics(executor, "web.async", Collections.emptyList()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(executor));
+    }
+
+    private static int connectionPoolSize(DataSource dataSource) {
+        try {
+            if (null != dataSource && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        }
+        catch (SQLException e) {
+            // not a pool we know, like when it is not wrapping one
+        }
+        return DEFAULT_THREADS;
+    }
+}
@@ -0,0 +1,75 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import webapp.springboot.employeesalary.persistent.changelog.EmployeeChangeLog;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Controller for the change feed under http://<web address?/users/changes,
+ * read from the {@link EmployeeChangeLog}. A downstream copy of the employees
+ * is kept in sync by applying the changes since the last sequence number it
+ * has seen, instead of reading the whole list again.
+ */
+@RestController
+@RequestMapping("/users/changes")
+public class EmployeeChangesController {
+
+    @Autowired
+    private EmployeeChangeLog changeLog;
+
+    /**
+     * Lists the writes of employees after the given sequence number in the
+     * order they were committed, as {@code {"results":[...],"last":...}}. Every
+     * change holds its "seq", its "op" (INSERT, UPDATE or DELETE), the "id" and
+     * the new values in "employee", {@literal null} for a delete. The following
+     * changes are read with since set to "last". The list is streamed to the
+     * client while it is read from the database.
+     *
+     * @param since the last sequence number seen, 0 for all changes
+     * @param limit the changes to list at most, 0 for all of them
+     * @return http response
+     */
+    @GetMapping(value = {"","/"})
+    public ResponseEntity<StreamingResponseBody> getChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+                                                            @RequestParam(value = "limit", defaultValue = "0") int limit) {
+        if (since < 0) {
+            return createSimpleJSONStreamingResponse("since must be >= 0, found "+since);
+        }
+        else if (limit < 0) {
+            return createSimpleJSONStreamingResponse("limit must be >= 0, found "+limit);
+        }
+        return ResponseEntity.status(OK).contentType(APPLICATION_JSON).body(out -> {
+            EmployeeJsonWriter writer = new EmployeeJsonWriter(out);
+            long[] last = {since};
+            writer.beginList();
+            try {
+                changeLog.read(since, limit, (seq, op, id, after) -> {
+                    writer.change(seq, op, id, after);
+                    last[0] = seq;
+                });
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.endList(last[0]);
+            writer.flush();
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> createSimpleJSONStreamingResponse(String message) {
+        byte[] body = ("{\"message\":"+EmployeeJsonWriter.quote(message)+"}").getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(BAD_REQUEST).contentType(APPLICATION_JSON).body(out -> out.write(body));
+    }
+}
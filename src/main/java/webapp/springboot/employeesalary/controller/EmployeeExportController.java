@@ -0,0 +1,91 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import webapp.springboot.employeesalary.ingest.EmployeeExportFormat;
+import webapp.springboot.employeesalary.ingest.EmployeeExportWriter;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Controller for exports of the employees under http://<web address?/users/export.
+ * An export is uploaded again to http://<web address?/users/upload, or
+ * imported, as is. Meant to move the employees between environments.
+ */
+@RestController
+@RequestMapping("/users/export")
+public class EmployeeExportController {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    /**
+     * Exports the employees with minSalary &lt;= salary &lt; maxSalary as a file
+     * in the given format: "csv" for the csv of the upload or "binary" for
+     * batches of columns, which are several times smaller. With gzip=true the
+     * file is compressed, as a file and not as a content encoding, so that it
+     * stays compressed until it is uploaded. The file is streamed to the client
+     * while it is read from the database.
+     *
+     * @param format csv or binary
+     * @param gzip whether to compress the file
+     * @return http response
+     */
+    @GetMapping(value = {"","/"})
+    public ResponseEntity<StreamingResponseBody> exportEmployees(@RequestParam(value = "format", defaultValue = "csv") String format,
+                                                                 @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                                                                 @RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                                                 @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary) {
+        EmployeeExportFormat exportFormat = EmployeeExportFormat.parse(format);
+        if (null == exportFormat) {
+            return createSimpleJSONStreamingResponse("Currently format '"+format+"' is not available");
+        }
+        else if (minSalary < 0) {
+            return createSimpleJSONStreamingResponse("minSalary must be >= 0, found "+minSalary);
+        }
+        else if (maxSalary < minSalary) {
+            return createSimpleJSONStreamingResponse("maxSalary must be >= "+minSalary+", found "+maxSalary);
+        }
+        String fileName = "employees." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.status(OK)
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header("Content-Disposition", ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> {
+                    OutputStream file = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+                    EmployeeExportWriter writer = exportFormat.writer(file);
+                    try {
+                        repository.streamEmployee(minSalary, maxSalary, 0, 0, "", true, writer);
+                    }
+                    catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    writer.finish();
+                    if (gzip) {
+                        ((GZIPOutputStream) file).finish();
+                    }
+                    file.flush();
+                });
+    }
+
+    private ResponseEntity<StreamingResponseBody> createSimpleJSONStreamingResponse(String message) {
+        byte[] body = ("{\"message\":"+EmployeeJsonWriter.quote(message)+"}").getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(BAD_REQUEST).contentType(APPLICATION_JSON).body(out -> out.write(body));
+    }
+}
@@ -0,0 +1,245 @@
+package webapp.springboot.employeesalary.controller;
+
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Writes employees as JSON straight to an output, through one reusable char
+ * buffer, so that the size of a list never has to fit on the heap. Strings
+ * are escaped as required by RFC 8259.
+ * <p>
+ * A list is written as {@code {"results":[...]}}, optionally followed by the
+ * "next" cursor of a keyset page, or by the "last" sequence number of a list
+ * of changes.
+ */
+public class EmployeeJsonWriter implements Flushable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private boolean firstElement = true;
+
+    public EmployeeJsonWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    public EmployeeJsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param employee the employee to serialize
+     * @return the employee as a JSON object
+     */
+    public static String toJSON(Employee employee) {
+        StringWriter json = new StringWriter(128);
+        EmployeeJsonWriter writer = new EmployeeJsonWriter(json);
+        try {
+            writer.employee(employee);
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * @param value any text
+     * @return the text as an escaped and quoted JSON string
+     */
+    public static String quote(String value) {
+        StringWriter json = new StringWriter(value.length() + 2);
+        EmployeeJsonWriter writer = new EmployeeJsonWriter(json);
+        try {
+            writer.string(value);
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return json.toString();
+    }
+
+    public void beginList() throws IOException {
+        append("{\"results\":[");
+        firstElement = true;
+    }
+
+    /**
+     * writes the next element of the list started with {@link #beginList()}
+     */
+    public void element(String id, String login, String name, float salary, LocalDate startDate) throws IOException {
+        if (!firstElement) {
+            append(",\n");
+        }
+        firstElement = false;
+        employee(id, login, name, salary, startDate);
+    }
+
+    public void element(Employee e) throws IOException {
+        element(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+    }
+
+    public void endList() throws IOException {
+        append("]}");
+    }
+
+    /**
+     * ends a keyset page
+     *
+     * @param next the cursor of the next page, {@literal null} on the last page
+     */
+    public void endList(String next) throws IOException {
+        append("],\"next\":");
+        if (null == next) {
+            append("null");
+        }
+        else {
+            string(next);
+        }
+        append('}');
+    }
+
+    /**
+     * writes the next change of a list started with {@link #beginList()}, as
+     * {@code {"seq":...,"op":...,"id":...,"employee":...}}
+     *
+     * @param after the new values of the employee, {@literal null} if it is deleted
+     */
+    public void change(long seq, String op, String id, Employee after) throws IOException {
+        if (!firstElement) {
+            append(",\n");
+        }
+        firstElement = false;
+        append("{\"seq\":");
+        append(Long.toString(seq));
+        append(",\"op\":");
+        string(op);
+        append(",\"id\":");
+        string(id);
+        append(",\"employee\":");
+        if (null == after) {
+            append("null");
+        }
+        else {
+            employee(after);
+        }
+        append('}');
+    }
+
+    /**
+     * ends a list of changes
+     *
+     * @param last the sequence number to read the following changes after
+     */
+    public void endList(long last) throws IOException {
+        append("],\"last\":");
+        append(Long.toString(last));
+        append('}');
+    }
+
+    public void employee(Employee e) throws IOException {
+        employee(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+    }
+
+    private void employee(String id, String login, String name, float salary, LocalDate startDate) throws IOException {
+        append("{\"id\":");
+        string(id);
+        append(",\"name\":");
+        string(name);
+        append(",\"login\":");
+        string(login);
+        append(",\"salary\":");
+        append(Float.toString(salary));
+        append(",\"startDate\":\"");
+        date(startDate);
+        append("\"}");
+    }
+
+    private void string(String value) throws IOException {
+        append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\');
+                append(c);
+            }
+            else if (c < 0x20) {
+                switch (c) {
+                    case '\n': append("\\n"); break;
+                    case '\r': append("\\r"); break;
+                    case '\t': append("\\t"); break;
+                    case '\b': append("\\b"); break;
+                    case '\f': append("\\f"); break;
+                    default:
+                        append("\\u00");
+                        append(HEX[c >> 4]);
+                        append(HEX[c & 0xF]);
+                }
+            }
+            else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    /**
+     * yyyy-MM-dd without going through a formatter
+     */
+    private void date(LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            append(date.toString());
+            return;
+        }
+        twoDigits(year / 100);
+        twoDigits(year % 100);
+        append('-');
+        twoDigits(date.getMonthValue());
+        append('-');
+        twoDigits(date.getDayOfMonth());
+    }
+
+    private void twoDigits(int value) throws IOException {
+        append((char) ('0' + value / 10));
+        append((char) ('0' + value % 10));
+    }
+
+    private void append(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            append(s.charAt(i));
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (position == BUFFER_SIZE) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+}
@@ -0,0 +1,67 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Controller for getting a single employee under http://<web address?/users/{id}
+ * in the default execution mode, {@code employees.web.execution=blocking}: the
+ * request thread reads the employee itself.
+ */
+@RestController
+@RequestMapping("/users")
+@ConditionalOnProperty(name = "employees.web.execution", havingValue = "blocking", matchIfMissing = true)
+public class EmployeeLookupController {
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private EmployeeJsonCache cache; // JSON of single employees, invalidated on every write
+
+    /**
+     * Get a single employee with the employee id given.
+     * It returns the employee in json with status code 200
+     * if found, otherwise status code 400 is returned with proper
+     * error message. Found employees are served from the
+     * {@link EmployeeJsonCache} after the first request
+     *
+     * @param id the employee id the search
+     * @return http response
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<String> getUserById(@PathVariable("id") String id) {
+        return lookup(repository, cache, id);
+    }
+
+    /**
+     * reads through the cache, shared with {@link AsyncEmployeeLookupController}
+     */
+    static ResponseEntity<String> lookup(EmployeesRepository repository, EmployeeJsonCache cache, String id) {
+        String json = cache.get(id, key -> repository.findById(key).map(EmployeeJsonWriter::toJSON).orElse(null));
+        if (null == json) {
+            return createSimpleJSONResponse(BAD_REQUEST, "No such employee");
+        }
+        return createJSONResponse(OK, json);
+    }
+
+    static ResponseEntity<String> createSimpleJSONResponse(HttpStatus status, String message) {
+        return createJSONResponse(status, "{\"message\":"+EmployeeJsonWriter.quote(message)+"}");
+    }
+
+    private static ResponseEntity<String> createJSONResponse(HttpStatus status, String body) {
+        return ResponseEntity.status(status).contentType(APPLICATION_JSON).body(body);
+    }
+}
@@ -1,25 +1,37 @@
 package webapp.springboot.employeesalary.controller;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.ingest.EmployeeCsvIngestService;
+import webapp.springboot.employeesalary.ingest.EmployeeFields;
+import webapp.springboot.employeesalary.ingest.InvalidEmployeeDataException;
+import webapp.springboot.employeesalary.ingest.UploadJob;
+import webapp.springboot.employeesalary.ingest.UploadJobService;
 import webapp.springboot.employeesalary.persistent.entity.Employee;
 import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+import webapp.springboot.employeesalary.persistent.repository.WriteResult;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
@@ -30,12 +42,19 @@ import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
  * This controller handles:
  * <ol>
  *     <li>CSV Upload</li>
+ *     <li>Progress Of An Asynchronous CSV Upload</li>
+ *     <li>Import Of A CSV File On The Server</li>
  *     <li>Create New Employee</li>
  *     <li>Update Existing Employee</li>
  *     <li>Delete Existing Employee</li>
- *     <li>Get An Existing Employee</li>
+ *     <li>Raise The Salaries Of A Set Of Employees</li>
+ *     <li>Delete A List Of Employees</li>
+ *     <li>Statistics Of The Employee Cache</li>
  *     <li>Get List Of Existing Employee By Some Criteria</li>
  * </ol>
+ * An existing employee is got from {@link EmployeeLookupController} or, with
+ * {@code employees.web.execution=async}, from {@link AsyncEmployeeLookupController}.
+ * The employees are exported by {@link EmployeeExportController}.
  */
 
 
@@ -45,13 +64,18 @@ public class EmployeeSalaryController {
 
     private static final String[] SORT_COLUMNS = {"name","salary","startDate"};
 
-    private static final DateTimeFormatter YYYY_MM_DD = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private static final DateTimeFormatter DD_MMM_YY = DateTimeFormatter.ofPattern("dd-MMM-yy");
-    private static final DateTimeFormatter[] VALID_DATE_FORMATS = {YYYY_MM_DD,DD_MMM_YY};
-
     @Autowired
     private EmployeesRepository repository; // repository to handle CRUD operations
 
+    @Autowired
+    private EmployeeCsvIngestService ingestService; // validates and writes uploaded csv files
+
+    @Autowired
+    private UploadJobService uploadJobs; // runs asynchronous csv uploads
+
+    @Autowired
+    private EmployeeJsonCache cache; // JSON of single employees, invalidated on every write
+
     /**
      * Handles an upload CSV request. In the following cases writing the new employee data
      * into the database will be discarded are:
@@ -59,7 +83,7 @@ public class EmployeeSalaryController {
      *     <li>if csv contains multiple entries with same employee id</li>
      *     <li>if csv contains multiple entries with sample login</li>
      *     <li>if csv contains any empty cell value</li>
-     *     <li>if login is not unique in database</li>
+     *     <li>if login is already used by another employee in database</li>
      * </ul>
      * Each entries in csv are inserted into database if the employee id does not exists in
      * database already, otherwise the entry is updated with the new values in the database.
@@ -67,100 +91,201 @@ public class EmployeeSalaryController {
      * the database. status code 201 is returned if upload is successful as well as new data
      * is either created or updated into the database. Otherwise 400 is returned if any error
      * occurred.
+     * <p>
+     * With async=true the file is only queued and status code 202 is returned at once,
+     * with the job id and a Location header of {@link #getUploadJob}, or status code 503
+     * if too many uploads are queued already. Meant for large files.
+     * <p>
+     * Files exported by {@link EmployeeExportController} are uploaded as they are,
+     * in any format and gzip compressed or not.
      *
      * @param csvFile the uploaded csv file
+     * @param async whether to ingest the file in the background
      * @return http response
      */
     @PostMapping(value = "/upload")
-    public ResponseEntity<String> uploadEmployeeDataCSV(@RequestParam("file") MultipartFile csvFile) {
-        List<Employee> employees = new ArrayList<>();
+    public ResponseEntity<String> uploadEmployeeDataCSV(@RequestParam("file") MultipartFile csvFile,
+                                                        @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        if (async) {
+            return submitUploadJob(csvFile);
+        }
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(csvFile.getInputStream()));
-            reader.readLine();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#")) continue;
-                String[] parts = line.split(",");
-                try {
-                    checkEmployeeInputOrThrow(parts[1],parts[3],parts[4]);
-                }
-                catch (RuntimeException e) {
-                    return createSimpleJSONResponse(BAD_REQUEST,e.getMessage());
-                }
-                employees.add(new Employee(parts[0],parts[1],parts[2],Float.parseFloat(parts[3]),parseDate(parts[4])));
-            }
-            if (employees.isEmpty()) {
+            if (ingestService.ingest(csvFile.getInputStream()) == 0) {
                 return createSimpleJSONResponse(OK,"Successfully uploaded but file is empty");
             }
-            for (int i = 0; i < employees.size()-1; i++) {
-                for (int j = i+1; j < employees.size(); j++) {
-                    Employee l = employees.get(i);
-                    Employee r = employees.get(j);
-                    if (l.getId().equals(r.getId())) {
-                        return createSimpleJSONResponse(BAD_REQUEST, "Duplicate entry found with id '"+l.getId()+"'");
-                    }
-                    else if (l.getLogin().equals(r.getLogin())) {
-                        return createSimpleJSONResponse(BAD_REQUEST, "Duplicate login found for employees with id '"+
-                                l.getId()+"' and '"+r.getId()+"'");
-                    }
-                    else if (repository.existsByLogin(l.getLogin())) {
-                        return createSimpleJSONResponse(BAD_REQUEST, "Login is not unique");
-                    }
-                }
-            }
+        }
+        catch (InvalidEmployeeDataException e) {
+            return createSimpleJSONResponse(BAD_REQUEST,e.getMessage());
         }
         catch (IOException e) {
             return createSimpleJSONResponse(BAD_REQUEST,"Error in parsing input CSV file");
         }
-        employees.forEach(e -> {
-            if (repository.existsByEmployeeId(e.getId())) {
-                repository.updateEmployee(e);
-            }
-            else {
-                repository.save(e);
-            }
-        });
         return createSimpleJSONResponse(CREATED, "Successfully uploaded and data created");
     }
 
+    private ResponseEntity<String> submitUploadJob(MultipartFile csvFile) {
+        UploadJob job;
+        try {
+            job = uploadJobs.submit(csvFile.getInputStream());
+        }
+        catch (RejectedExecutionException e) {
+            return createSimpleJSONResponse(SERVICE_UNAVAILABLE, "Too many uploads in progress, try again later");
+        }
+        catch (IOException e) {
+            return createSimpleJSONResponse(BAD_REQUEST,"Error in parsing input CSV file");
+        }
+        return createUploadJobResponse(job);
+    }
+
+    /**
+     * Imports a CSV file that is on the server already, in the directory configured
+     * as employees.import.directory, like an upload with async=true. The file is read
+     * in place, without copying it. Status code 400 is returned if imports are not
+     * configured or the file is not in the import directory.
+     *
+     * @param fileName the csv file name, relative to the import directory
+     * @return http response
+     */
+    @PostMapping(value = "/import")
+    public ResponseEntity<String> importEmployeeDataCSV(@RequestParam("file") String fileName) {
+        UploadJob job;
+        try {
+            job = uploadJobs.submitImport(fileName);
+        }
+        catch (RejectedExecutionException e) {
+            return createSimpleJSONResponse(SERVICE_UNAVAILABLE, "Too many uploads in progress, try again later");
+        }
+        catch (NoSuchFileException e) {
+            return createSimpleJSONResponse(BAD_REQUEST,"No such file in the import directory");
+        }
+        catch (IOException e) {
+            return createSimpleJSONResponse(BAD_REQUEST,"Error in reading input CSV file");
+        }
+        return createUploadJobResponse(job);
+    }
+
+    private ResponseEntity<String> createUploadJobResponse(UploadJob job) {
+        return ResponseEntity.status(ACCEPTED)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/users/upload/jobs/{id}").buildAndExpand(job.getId()).toUri())
+                .contentType(APPLICATION_JSON)
+                .body(uploadJobToJSON(job));
+    }
+
+    /**
+     * Progress of an asynchronous upload or import: its status (QUEUED, VALIDATING, WRITING,
+     * SUCCEEDED or FAILED), the rows parsed, validated and written so far, the
+     * rows per second of the current phase and the error if it failed. Status
+     * code 400 is returned if there is no such job.
+     *
+     * @param id the job id returned by the upload
+     * @return http response
+     */
+    @GetMapping("/upload/jobs/{id}")
+    public ResponseEntity<String> getUploadJob(@PathVariable("id") String id) {
+        return uploadJobs.get(id)
+                .map(job -> createJSONResponse(OK, uploadJobToJSON(job)))
+                .orElseGet(() -> createSimpleJSONResponse(BAD_REQUEST, "No such upload job"));
+    }
+
+    /**
+     * Lists the employees with minSalary &lt;= salary &lt; maxSalary, optionally sorted.
+     * Pages are selected either with offset and limit, or, if a cursor parameter is
+     * given, by keyset paging: the first page is requested with an empty cursor and
+     * every page carries the cursor of the next one in "next", which is
+     * {@literal null} on the last page. Keyset pages cost the same at any depth.
+     * The list is streamed to the client while it is read from the database.
+     *
+     * @return http response
+     */
     @GetMapping(value = {"","/"})
-    public ResponseEntity<String> fetchListOfEmployees(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary, @RequestParam(value = "maxSalary", defaultValue = "4000.00") float maxSalary,
+    public ResponseEntity<StreamingResponseBody> fetchListOfEmployees(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary, @RequestParam(value = "maxSalary", defaultValue = "4000.00") float maxSalary,
                                                        @RequestParam(value = "offset",defaultValue = "0") int offset, @RequestParam(value = "limit",defaultValue = "0") int limit,
-                                                       @RequestParam(value = "sortBy", defaultValue = "") String sortBy, @RequestParam(value = "asc",defaultValue = "1") int ascending) {
+                                                       @RequestParam(value = "sortBy", defaultValue = "") String sortBy, @RequestParam(value = "asc",defaultValue = "1") int ascending,
+                                                       @RequestParam(value = "cursor", required = false) String cursor) {
         if (minSalary < 0) {
-            return createSimpleJSONResponse(BAD_REQUEST, "minSalary must be >= 0, found "+minSalary);
+            return createSimpleJSONStreamingResponse(BAD_REQUEST, "minSalary must be >= 0, found "+minSalary);
         }
         else if (maxSalary < minSalary) {
-            return createSimpleJSONResponse(BAD_REQUEST,"maxSalary must be >= "+minSalary+", found "+maxSalary);
+            return createSimpleJSONStreamingResponse(BAD_REQUEST,"maxSalary must be >= "+minSalary+", found "+maxSalary);
         }
         else if (limit < 0) {
-            return createSimpleJSONResponse(BAD_REQUEST, "limit must be >= 0, found "+limit);
+            return createSimpleJSONStreamingResponse(BAD_REQUEST, "limit must be >= 0, found "+limit);
         }
         else if (offset < 0) {
-            return createSimpleJSONResponse(BAD_REQUEST,"offset must be >= 0, found "+offset);
+            return createSimpleJSONStreamingResponse(BAD_REQUEST,"offset must be >= 0, found "+offset);
         }
         else if (!"".equals(sortBy) && Arrays.binarySearch(SORT_COLUMNS,sortBy) < 0) {
-            return createSimpleJSONResponse(BAD_REQUEST,"Currently sort by '"+sortBy+"' is not available");
+            return createSimpleJSONStreamingResponse(BAD_REQUEST,"Currently sort by '"+sortBy+"' is not available");
+        }
+        if (null != cursor) {
+            return fetchPageOfEmployees(minSalary, maxSalary, offset, limit, sortBy, ascending==1, cursor);
+        }
+        return createStreamingJSONResponse(out -> {
+            EmployeeJsonWriter writer = new EmployeeJsonWriter(out);
+            writer.beginList();
+            try {
+                repository.streamEmployee(minSalary, maxSalary, limit, offset, sortBy, ascending==1, writer::element);
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.endList();
+            writer.flush();
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> fetchPageOfEmployees(float minSalary, float maxSalary, int offset, int limit,
+                                                        String sortBy, boolean ascending, String cursor) {
+        if (limit == 0) {
+            return createSimpleJSONStreamingResponse(BAD_REQUEST, "limit must be > 0 when paging with a cursor");
+        }
+        else if (offset > 0) {
+            return createSimpleJSONStreamingResponse(BAD_REQUEST, "offset can not be combined with a cursor");
+        }
+        PageCursor after = null;
+        if (!cursor.isEmpty()) {
+            try {
+                after = PageCursor.decode(cursor);
+            }
+            catch (IllegalArgumentException e) {
+                return createSimpleJSONStreamingResponse(BAD_REQUEST, "Invalid cursor");
+            }
+            if (!after.matches(sortBy, ascending)) {
+                return createSimpleJSONStreamingResponse(BAD_REQUEST, "Cursor does not match the requested sort order");
+            }
         }
-        List<Employee> employees = repository.fetchEmployee(minSalary, maxSalary, offset, limit,sortBy,ascending==1);
-        return createJSONResponse(OK,employeeListToJSON(employees));
+        PageCursor last = after;
+        // read like the other lists, off the request thread
+        return createStreamingJSONResponse(out -> {
+            List<Employee> employees = repository.fetchEmployeeAfter(minSalary, maxSalary, limit, sortBy, ascending,
+                    null == last ? null : last.sortValue(), null == last ? null : last.getLastId());
+            String next = employees.size() < limit ? null
+                    : PageCursor.after(employees.get(employees.size()-1), sortBy, ascending).encode();
+            EmployeeJsonWriter writer = new EmployeeJsonWriter(out);
+            writer.beginList();
+            for (Employee e : employees) {
+                writer.element(e);
+            }
+            writer.endList(next);
+            writer.flush();
+        });
     }
 
     /**
-     * Get a single employee with the employee id given.
-     * It returns the employee in json with status code 200
-     * if found, otherwise status code 400 is returned with proper
-     * error message
+     * Counters of the employee cache used by {@code GET /users/{id}}, to help
+     * sizing it.
      *
-     * @param id the employee id the search
      * @return http response
      */
-    
-    @GetMapping("/{id}")
-    public ResponseEntity<String> getUserById(@PathVariable("id") String id) {
-        Optional<Employee> employee = repository.findById(id);
-        return employee.map(value -> createJSONResponse(OK, employeeToJSON(value))).orElseGet(
-                () -> createSimpleJSONResponse(BAD_REQUEST, "No such employee"));
+    @GetMapping("/cache/stats")
+    public ResponseEntity<String> getCacheStats() {
+        CacheStats stats = cache.stats();
+        return createJSONResponse(OK, "{\"size\":"+cache.size()+"," +
+                "\"hits\":"+stats.hitCount()+"," +
+                "\"misses\":"+stats.missCount()+"," +
+                "\"evictions\":"+stats.evictionCount()+"," +
+                "\"hitRate\":"+stats.hitRate()+"}");
     }
 
     /**
@@ -174,21 +299,18 @@ public class EmployeeSalaryController {
     @PostMapping(value = {"","/"}, consumes = {MULTIPART_FORM_DATA_VALUE})
     public ResponseEntity<String> createEmployee(HttpServletRequest request) {
         final String _id = request.getParameter("id");
-        if (repository.existsByEmployeeId(_id)) {
-            return createSimpleJSONResponse(BAD_REQUEST,"Employee ID already exists");
-        }
         try {
             checkEmployeeInputOrThrow(request);
         }
         catch (RuntimeException e) {
             return createSimpleJSONResponse(BAD_REQUEST,e.getMessage());
         }
-        repository.save(new Employee(_id,
+        WriteResult result = repository.insertEmployee(new Employee(_id,
                 request.getParameter("login"),
                 request.getParameter("name"),
                 Float.parseFloat(request.getParameter("salary")),
-                parseDate(request.getParameter("startDate"))));
-        return createSimpleJSONResponse(CREATED,"Successfully created");
+                EmployeeFields.parseDate(request.getParameter("startDate"))));
+        return createWriteResponse(result, CREATED, "Successfully created");
     }
 
     /**
@@ -202,21 +324,18 @@ public class EmployeeSalaryController {
      */
     @RequestMapping(value = "/{id}", method = {RequestMethod.PUT,RequestMethod.PATCH})
     public ResponseEntity<String> updateUserById(@PathVariable("id") String _id, HttpServletRequest request) {
-        if (!repository.existsByEmployeeId(_id)) {
-            return createSimpleJSONResponse(BAD_REQUEST,"No such employee");
-        }
         try {
             checkEmployeeInputOrThrow(request);
         }
         catch (RuntimeException e) {
             return createSimpleJSONResponse(BAD_REQUEST,e.getMessage());
         }
-        repository.updateEmployee(new Employee(_id,
+        WriteResult result = repository.updateEmployee(new Employee(_id,
                 request.getParameter("login"),
                 request.getParameter("name"),
                 Float.parseFloat(request.getParameter("salary")),
-                parseDate(request.getParameter("startDate"))));
-        return createSimpleJSONResponse(CREATED, "Successfully updated");
+                EmployeeFields.parseDate(request.getParameter("startDate"))));
+        return createWriteResponse(result, CREATED, "Successfully updated");
     }
 
     /**
@@ -228,64 +347,153 @@ public class EmployeeSalaryController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<String> deleteUserById(@PathVariable("id") String id) {
-        if (!repository.existsByEmployeeId(id)) {
+        if (!repository.deleteEmployee(id)) {
             return createSimpleJSONResponse(BAD_REQUEST, "No such employee");
         }
-        repository.deleteById(id);
         return createSimpleJSONResponse(OK, "Successfully deleted");
     }
 
-    private String employeeToJSON(Employee e) {
-        return "{\"id\":\""+e.getId()+"\"," +
-                "\"name\":\""+e.getName()+"\"," +
-                "\"login\":\""+e.getLogin()+"\"," +
-                "\"salary\":"+e.getSalary()+"," +
-                "\"startDate\":\""+e.getStartDate().format(YYYY_MM_DD)+"\"}";
+    /**
+     * Raises the salaries of all employees with minSalary &lt;= salary &lt; maxSalary
+     * and, if given, a start date before startedBefore by the given percent, a
+     * negative one lowers them. The whole set is changed by a single statement
+     * in one transaction. Status code 200 is returned with the number of
+     * employees raised in "count", status code 400 if the input is invalid and
+     * status code 409 if a concurrent write changed the set meanwhile, in
+     * which case nothing is raised.
+     *
+     * @param percent the raise in percent, &gt; -100
+     * @param startedBefore a date as yyyy-MM-dd or dd-MMM-yy, optional
+     * @return http response
+     */
+    @PostMapping("/raise")
+    public ResponseEntity<String> raiseSalaries(@RequestParam("percent") double percent,
+                                                @RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                                @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary,
+                                                @RequestParam(value = "startedBefore", required = false) String startedBefore) {
+        if (!(percent > -100) || Double.isInfinite(percent)) {
+            return createSimpleJSONResponse(BAD_REQUEST, "percent must be > -100, found "+percent);
+        }
+        else if (minSalary < 0) {
+            return createSimpleJSONResponse(BAD_REQUEST, "minSalary must be >= 0, found "+minSalary);
+        }
+        else if (maxSalary < minSalary) {
+            return createSimpleJSONResponse(BAD_REQUEST,"maxSalary must be >= "+minSalary+", found "+maxSalary);
+        }
+        LocalDate before = null;
+        if (null != startedBefore) {
+            before = EmployeeFields.parseDate(startedBefore);
+            if (null == before) {
+                return createSimpleJSONResponse(BAD_REQUEST, "Invalid date");
+            }
+        }
+        int count;
+        try {
+            count = repository.raiseSalaries(minSalary, maxSalary, before, percent);
+        }
+        catch (ConcurrencyFailureException e) {
+            return createSimpleJSONResponse(CONFLICT, "Employees were changed meanwhile, try again");
+        }
+        return createCountResponse("Successfully updated", count);
+    }
+
+    /**
+     * Deletes all employees with the given ids, repeated or separated by
+     * commas, with a single statement in one transaction. Ids without an
+     * employee are ignored. Status code 200 is returned with the number of
+     * employees deleted in "count" and status code 409 if a concurrent write
+     * inserted one of the ids meanwhile, in which case nothing is deleted.
+     *
+     * @param ids the ids of the employees to delete
+     * @return http response
+     */
+    @DeleteMapping(value = {"","/"})
+    public ResponseEntity<String> deleteUsersById(@RequestParam("id") List<String> ids) {
+        // Spring only splits a single value at its commas
+        Set<String> unique = new LinkedHashSet<>();
+        for (String id : ids) {
+            unique.addAll(Arrays.asList(id.split(",")));
+        }
+        int count;
+        try {
+            count = repository.deleteEmployees(unique);
+        }
+        catch (ConcurrencyFailureException e) {
+            return createSimpleJSONResponse(CONFLICT, "Employees were changed meanwhile, try again");
+        }
+        return createCountResponse("Successfully deleted", count);
+    }
+
+    /**
+     * Employee lists are streamed by the task executor of Spring MVC, which is
+     * bounded with {@code employees.web.execution=async}.
+     *
+     * @return http response with status code 503
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejectedExecution() {
+        return createSimpleJSONResponse(SERVICE_UNAVAILABLE, "Too many requests in progress, try again later");
     }
 
-    private String employeeListToJSON(List<Employee> employees) {
-        StringBuffer buffer = new StringBuffer();
-        employees.forEach(e -> buffer.append(employeeToJSON(e)).append(",\n"));
-        return "{\"results\":["+ buffer.toString() +"]}";
+    private static String uploadJobToJSON(UploadJob job) {
+        return "{\"id\":"+EmployeeJsonWriter.quote(job.getId())+"," +
+                "\"status\":\""+job.getStatus()+"\"," +
+                "\"rowsParsed\":"+job.getRowsParsed()+"," +
+                "\"rowsValidated\":"+job.getRowsValidated()+"," +
+                "\"rowsWritten\":"+job.getRowsWritten()+"," +
+                "\"rowsPerSecond\":"+job.getRowsPerSecond()+"," +
+                "\"submittedAt\":"+instantToJSON(job.getSubmittedAt())+"," +
+                "\"startedAt\":"+instantToJSON(job.getStartedAt())+"," +
+                "\"finishedAt\":"+instantToJSON(job.getFinishedAt())+"," +
+                "\"error\":"+(null == job.getError() ? "null" : EmployeeJsonWriter.quote(job.getError()))+"}";
+    }
+
+    private static String instantToJSON(Instant instant) {
+        return null == instant ? "null" : "\""+instant+"\"";
     }
 
     private ResponseEntity<String> createSimpleJSONResponse(HttpStatus status, String message) {
-        return createJSONResponse(status, "{\"message\":\""+message+"\"}");
+        return createJSONResponse(status, "{\"message\":"+EmployeeJsonWriter.quote(message)+"}");
+    }
+
+    /**
+     * Maps the outcome of a single write to its response. The repository
+     * enforces the unique id and login in the same statement as the write,
+     * so there is no separate check that a concurrent request could pass too.
+     */
+    private ResponseEntity<String> createWriteResponse(WriteResult result, HttpStatus status, String message) {
+        switch (result) {
+            case NO_SUCH_EMPLOYEE: return createSimpleJSONResponse(BAD_REQUEST, "No such employee");
+            case ID_EXISTS: return createSimpleJSONResponse(BAD_REQUEST, "Employee ID already exists");
+            case LOGIN_EXISTS: return createSimpleJSONResponse(BAD_REQUEST, "Employee login not unique");
+            default: return createSimpleJSONResponse(status, message);
+        }
+    }
+
+    private ResponseEntity<String> createCountResponse(String message, int count) {
+        return createJSONResponse(OK, "{\"message\":"+EmployeeJsonWriter.quote(message)+",\"count\":"+count+"}");
     }
 
     private ResponseEntity<String> createJSONResponse(HttpStatus status, String body) {
         return ResponseEntity.status(status).contentType(APPLICATION_JSON).body(body);
     }
 
-    private void checkEmployeeInputOrThrow(HttpServletRequest request) throws RuntimeException {
-        checkEmployeeInputOrThrow(request.getParameter("login"),
-                request.getParameter("salary"),
-                request.getParameter("startDate"));
+    private ResponseEntity<StreamingResponseBody> createStreamingJSONResponse(StreamingResponseBody body) {
+        return ResponseEntity.status(OK).contentType(APPLICATION_JSON).body(body);
     }
 
-    private void checkEmployeeInputOrThrow(String _login, String _salary, String _startDate) throws RuntimeException {
-        if (repository.existsByLogin(_login)) {
-            throw new RuntimeException( "Employee login not unique");
-        }
-        try {
-            if (Float.parseFloat(_salary) < 0) {
-                throw new RuntimeException("Invalid salary");
-            }
-        }
-        catch (NumberFormatException|NullPointerException e) {
-            throw new RuntimeException("Invalid salary");
-        }
-        if (null == parseDate(_startDate)) {
-            throw new RuntimeException("Invalid date");
-        }
+    private ResponseEntity<StreamingResponseBody> createSimpleJSONStreamingResponse(HttpStatus status, String message) {
+        byte[] body = createSimpleJSONResponse(status, message).getBody().getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status).contentType(APPLICATION_JSON).body(out -> out.write(body));
     }
 
-    private LocalDate parseDate(String date) {
-        for (DateTimeFormatter f : VALID_DATE_FORMATS) {
-            try {
-                return LocalDate.parse(date,f);
-            } catch (DateTimeParseException | NullPointerException e) {}
-        }
-        return null;
+    private void checkEmployeeInputOrThrow(HttpServletRequest request) throws RuntimeException {
+        checkEmployeeInputOrThrow(request.getParameter("salary"),
+                request.getParameter("startDate"));
+    }
+
+    private void checkEmployeeInputOrThrow(String _salary, String _startDate) throws RuntimeException {
+        EmployeeFields.parseSalaryOrThrow(_salary);
+        EmployeeFields.parseDateOrThrow(_startDate);
     }
 }
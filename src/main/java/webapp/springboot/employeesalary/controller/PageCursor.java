@@ -0,0 +1,114 @@
+package webapp.springboot.employeesalary.controller;
+
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Continuation token of a keyset paged employee list. It remembers the sort
+ * order of the request and the (sort value, id) of the last employee returned,
+ * so that the next page can seek directly past it. Clients only see the
+ * opaque base64 encoded form.
+ * <p>
+ * Ids and names may contain any character, line breaks too, so the id is
+ * prefixed with its length and the value takes the rest of the token.
+ */
+final class PageCursor {
+
+    private static final char SEPARATOR = '\n';
+
+    private final String sortBy;
+    private final boolean ascending;
+    private final String lastId;
+    private final String lastValue;
+
+    private PageCursor(String sortBy, boolean ascending, String lastId, String lastValue) {
+        this.sortBy = sortBy;
+        this.ascending = ascending;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    /**
+     * @param last the last employee of the current page
+     * @param sortBy the sort column of the request, empty if sorted by id only
+     * @param ascending the sort direction of the request
+     * @return the cursor to the page following {@code last}
+     */
+    static PageCursor after(Employee last, String sortBy, boolean ascending) {
+        String value;
+        switch (sortBy) {
+            case "name": value = last.getName(); break;
+            case "salary": value = Float.toString(last.getSalary()); break;
+            case "startDate": value = last.getStartDate().toString(); break;
+            default: value = "";
+        }
+        return new PageCursor(sortBy, ascending, last.getId(), value);
+    }
+
+    /**
+     * @param token a token returned by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    static PageCursor decode(String token) throws IllegalArgumentException {
+        String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split(String.valueOf(SEPARATOR), 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int idLength;
+        try {
+            idLength = Integer.parseInt(parts[2]);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (idLength < 1 || idLength > parts[3].length()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        PageCursor cursor = new PageCursor(parts[0], "1".equals(parts[1]),
+                parts[3].substring(0, idLength), parts[3].substring(idLength));
+        cursor.sortValue();
+        return cursor;
+    }
+
+    String encode() {
+        String raw = sortBy + SEPARATOR + (ascending ? "1" : "0") + SEPARATOR + lastId.length() + SEPARATOR
+                + lastId + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return {@literal true} if the cursor was created for the given sort order
+     */
+    boolean matches(String sortBy, boolean ascending) {
+        return this.sortBy.equals(sortBy) && this.ascending == ascending;
+    }
+
+    String getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return the sort column value of the last employee in its column type,
+     * {@literal null} if sorted by id only
+     * @throws IllegalArgumentException if the value does not fit the column
+     */
+    Object sortValue() throws IllegalArgumentException {
+        try {
+            switch (sortBy) {
+                case "name": return lastValue;
+                case "salary": return Float.valueOf(lastValue);
+                case "startDate": return LocalDate.parse(lastValue);
+                case "": return null;
+                default: throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
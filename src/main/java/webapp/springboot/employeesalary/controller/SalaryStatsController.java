@@ -0,0 +1,238 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import webapp.springboot.employeesalary.analytics.SalaryStatistics;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * Controller for the salary analytics under http://<web address?/users/stats.
+ * Every statistic is computed by the database in a single aggregate query over
+ * the employees with minSalary &lt;= salary &lt; maxSalary, so clients never have
+ * to download the employee list.
+ * The snapshot endpoint instead answers from {@link SalaryStatistics}, kept in
+ * memory for the whole table. This controller handles:
+ * <ol>
+ *     <li>Count, Sum, Min, Max, Mean And Default Percentiles</li>
+ *     <li>Snapshot Of The Statistics Of All Employees</li>
+ *     <li>Salary Histogram</li>
+ *     <li>Salary Percentiles</li>
+ *     <li>Aggregates By Start Year</li>
+ * </ol>
+ */
+@RestController
+@RequestMapping("/users/stats")
+public class SalaryStatsController {
+
+    private static final double[] DEFAULT_PERCENTILES = {50, 90, 99};
+    private static final int MAX_BUCKETS = 1000;
+    // the salaries of a histogram may span at most this many bucket widths
+    private static final double MAX_BUCKET_SPAN = 1e6;
+    private static final int MAX_PERCENTILES = 32;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private SalaryStatistics statistics;
+
+    /**
+     * @return count, sum, min, max, mean and the 50th, 90th and 99th percentiles
+     */
+    @GetMapping(value = {"","/"})
+    public ResponseEntity<String> getSummary(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                             @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary) {
+        String error = checkSalaryRange(minSalary, maxSalary);
+        if (null != error) {
+            return createSimpleJSONResponse(BAD_REQUEST, error);
+        }
+        String summary = repository.summarizeSalaries(minSalary, maxSalary).toJSON();
+        return createJSONResponse(OK, summary.substring(0, summary.length()-1) +
+                ",\"percentiles\":" + percentilesToJSON(minSalary, maxSalary, DEFAULT_PERCENTILES) + "}");
+    }
+
+    /**
+     * Statistics of all employees from memory, without querying the database.
+     * Count is exact, sum, mean and standard deviation are computed from exact
+     * sums and only rounded once, min, max and the percentiles are within 1%
+     * of the exact value. Status code 503 is returned
+     * while they are still loaded in the background after startup.
+     *
+     * @return count, sum, min, max, mean, standard deviation and the 50th, 90th and 99th percentiles
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<String> getSnapshot() {
+        if (!statistics.isLoaded()) {
+            return createSimpleJSONResponse(SERVICE_UNAVAILABLE, "Salary statistics are still loading, try again later");
+        }
+        double[] fractions = new double[DEFAULT_PERCENTILES.length];
+        for (int i = 0; i < fractions.length; i++) {
+            fractions[i] = DEFAULT_PERCENTILES[i] / 100;
+        }
+        SalaryStatistics.Snapshot snapshot = statistics.snapshot(fractions);
+        String summary = snapshot.getSummary().toJSON();
+        return createJSONResponse(OK, summary.substring(0, summary.length()-1) +
+                ",\"standardDeviation\":" + snapshot.getStandardDeviation() +
+                ",\"percentiles\":" + percentilesToJSON(DEFAULT_PERCENTILES, snapshot.getQuantiles()) + "}");
+    }
+
+    /**
+     * Salary histogram of equal width buckets. Unless the bucket width is given,
+     * the range between the lowest and the highest salary is split into the
+     * requested number of buckets. A given bucket width must not split the
+     * salaries in range into more than a million buckets, and the salaries
+     * above its last bucket are counted apart.
+     *
+     * @return the buckets with their bounds and counts, and the count above the last bucket
+     */
+    @GetMapping("/histogram")
+    public ResponseEntity<String> getHistogram(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                               @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary,
+                                               @RequestParam(value = "buckets", defaultValue = "10") int buckets,
+                                               @RequestParam(value = "bucketWidth", required = false) Double bucketWidth) {
+        String error = checkSalaryRange(minSalary, maxSalary);
+        if (null != error) {
+            return createSimpleJSONResponse(BAD_REQUEST, error);
+        }
+        else if (buckets < 1 || buckets > MAX_BUCKETS) {
+            return createSimpleJSONResponse(BAD_REQUEST, "buckets must be between 1 and "+MAX_BUCKETS+", found "+buckets);
+        }
+        else if (null != bucketWidth && !(bucketWidth > 0)) {
+            return createSimpleJSONResponse(BAD_REQUEST, "bucketWidth must be > 0, found "+bucketWidth);
+        }
+        SalarySummary summary = repository.summarizeSalaries(minSalary, maxSalary);
+        double origin = minSalary;
+        double width;
+        if (null != bucketWidth) {
+            double span = summary.getCount() == 0 ? 0 : summary.getMax() - origin;
+            if (span / bucketWidth > MAX_BUCKET_SPAN) {
+                return createSimpleJSONResponse(BAD_REQUEST, "bucketWidth must be >= "+span / MAX_BUCKET_SPAN
+                        +" for the salaries in range, found "+bucketWidth);
+            }
+            width = bucketWidth;
+        }
+        else {
+            if (summary.getCount() == 0) {
+                return createJSONResponse(OK, "{\"bucketWidth\":null,\"buckets\":[],\"above\":0}");
+            }
+            origin = summary.getMin();
+            // a degenerate range still gets buckets of a usable width
+            width = Math.max(summary.getMax() - summary.getMin(), 1) / buckets;
+        }
+        // with a given width, one more bucket takes all salaries above the requested ones
+        boolean countAbove = null != bucketWidth;
+        long[] counts = repository.salaryHistogram(minSalary, maxSalary, origin, width, countAbove ? buckets + 1 : buckets);
+        StringBuilder json = new StringBuilder("{\"bucketWidth\":").append(width).append(",\"buckets\":[");
+        for (int i = 0; i < buckets; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"from\":").append(origin + i * width)
+                    .append(",\"to\":").append(origin + (i + 1) * width)
+                    .append(",\"count\":").append(counts[i]).append('}');
+        }
+        json.append("],\"above\":").append(countAbove ? counts[buckets] : 0);
+        return createJSONResponse(OK, json.append('}').toString());
+    }
+
+    /**
+     * Every percentile is computed by the database in its own aggregate,
+     * so at most 32 different ones can be requested at once.
+     *
+     * @return the requested percentiles, 50th, 90th and 99th by default
+     */
+    @GetMapping("/percentiles")
+    public ResponseEntity<String> getPercentiles(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                                 @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary,
+                                                 @RequestParam(value = "p", defaultValue = "50,90,99") double[] percentiles) {
+        String error = checkSalaryRange(minSalary, maxSalary);
+        if (null != error) {
+            return createSimpleJSONResponse(BAD_REQUEST, error);
+        }
+        if (percentiles.length > MAX_PERCENTILES) {
+            return createSimpleJSONResponse(BAD_REQUEST, "at most "+MAX_PERCENTILES+" percentiles, found "+percentiles.length);
+        }
+        Set<String> names = new HashSet<>();
+        for (double p : percentiles) {
+            if (!(p >= 0 && p <= 100)) {
+                return createSimpleJSONResponse(BAD_REQUEST, "percentiles must be between 0 and 100, found "+p);
+            }
+            if (!names.add(percentileName(p))) {
+                return createSimpleJSONResponse(BAD_REQUEST, "percentile "+percentileName(p)+" requested twice");
+            }
+        }
+        return createJSONResponse(OK, percentilesToJSON(minSalary, maxSalary, percentiles));
+    }
+
+    /**
+     * @return count, sum, min, max and mean of every start year
+     */
+    @GetMapping("/by-start-year")
+    public ResponseEntity<String> getSummaryByStartYear(@RequestParam(value = "minSalary", defaultValue = "0") float minSalary,
+                                                        @RequestParam(value = "maxSalary", defaultValue = "3.4028235E38") float maxSalary) {
+        String error = checkSalaryRange(minSalary, maxSalary);
+        if (null != error) {
+            return createSimpleJSONResponse(BAD_REQUEST, error);
+        }
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        boolean first = true;
+        for (Map.Entry<Integer,SalarySummary> year : repository.summarizeSalariesByStartYear(minSalary, maxSalary).entrySet()) {
+            String summary = year.getValue().toJSON();
+            json.append(first ? "" : ",").append("{\"year\":").append(year.getKey()).append(',')
+                    .append(summary, 1, summary.length());
+            first = false;
+        }
+        return createJSONResponse(OK, json.append("]}").toString());
+    }
+
+    private String percentilesToJSON(float minSalary, float maxSalary, double[] percentiles) {
+        double[] fractions = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            fractions[i] = percentiles[i] / 100;
+        }
+        return percentilesToJSON(percentiles, repository.salaryPercentiles(minSalary, maxSalary, fractions));
+    }
+
+    private static String percentilesToJSON(double[] percentiles, Double[] values) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < percentiles.length; i++) {
+            json.append(i > 0 ? "," : "").append("\"p").append(percentileName(percentiles[i])).append("\":").append(values[i]);
+        }
+        return json.append('}').toString();
+    }
+
+    private static String percentileName(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+
+    private static String checkSalaryRange(float minSalary, float maxSalary) {
+        if (minSalary < 0) {
+            return "minSalary must be >= 0, found "+minSalary;
+        }
+        else if (maxSalary < minSalary) {
+            return "maxSalary must be >= "+minSalary+", found "+maxSalary;
+        }
+        return null;
+    }
+
+    private ResponseEntity<String> createSimpleJSONResponse(HttpStatus status, String message) {
+        return createJSONResponse(status, "{\"message\":"+EmployeeJsonWriter.quote(message)+"}");
+    }
+
+    private ResponseEntity<String> createJSONResponse(HttpStatus status, String body) {
+        return ResponseEntity.status(status).contentType(APPLICATION_JSON).body(body);
+    }
+}
@@ -0,0 +1,114 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Splits a csv into blocks of whole rows, so that the blocks can be read by
+ * a {@link CsvRowReader} each, in parallel. The header line is skipped.
+ * A block is about blockSize bytes, or larger if a single row is.
+ * <p>
+ * The input is read straight into the block arrays, which are reused once
+ * their blocks are released. Only the start of a row that did not fit a
+ * block is copied to the next one.
+ */
+final class CsvBlockReader {
+
+    private final InputStream in;
+    private final int blockSize;
+    private final Queue<byte[]> released = new ConcurrentLinkedQueue<>();
+    private byte[] carry = new byte[0]; // the start of a row that did not fit the last block
+    private int carried;
+    private boolean eof;
+    private boolean headerSkipped;
+
+    CsvBlockReader(InputStream in, int blockSize) {
+        this.in = in;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return the next block, {@literal null} at the end of the input
+     */
+    Block next() throws IOException {
+        if (eof && carried == 0) {
+            return null;
+        }
+        byte[] block = take(Math.max(blockSize, carried * 2));
+        System.arraycopy(carry, 0, block, 0, carried);
+        int length = carried;
+        int from = 0;
+        while (true) {
+            while (length < block.length && !eof) {
+                int read = in.read(block, length, block.length - length);
+                if (read < 0) {
+                    eof = true;
+                }
+                else {
+                    length += read;
+                }
+            }
+            if (!headerSkipped) {
+                int header = indexOfLineBreak(block, length);
+                if (header >= 0 || eof) {
+                    headerSkipped = true;
+                    from = header < 0 ? length : header + 1;
+                }
+            }
+            int end = eof ? length : headerSkipped ? CsvRowReader.endOfLastRow(block, from, length) : -1;
+            if (end >= 0) {
+                carried = length - end;
+                if (carry.length < carried) {
+                    carry = new byte[Math.max(carried, carry.length * 2)];
+                }
+                System.arraycopy(block, end, carry, 0, carried);
+                if (end == from && eof) {
+                    released.add(block);
+                    return null;
+                }
+                return new Block(block, from, end);
+            }
+            block = Arrays.copyOf(block, block.length * 2);
+        }
+    }
+
+    /**
+     * hands the array of a block back for reuse, the block must not be read anymore
+     */
+    void release(Block block) {
+        released.add(block.bytes);
+    }
+
+    private byte[] take(int size) {
+        byte[] block = released.poll();
+        return null == block || block.length < size ? new byte[size] : block;
+    }
+
+    private static int indexOfLineBreak(byte[] text, int length) {
+        for (int i = 0; i < length; i++) {
+            if (text[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * whole rows in bytes[from, to)
+     */
+    static final class Block {
+
+        final byte[] bytes;
+        final int from;
+        final int to;
+
+        private Block(byte[] bytes, int from, int to) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the rows of a UTF-8 csv straight from its bytes, through one
+ * reusable buffer, without creating any object per row. Rows that are in
+ * memory already are read in place, see {@link #reset(byte[], int, int)}.
+ * <p>
+ * Fields are separated by commas. A field that starts with a double quote
+ * ends at the next single double quote, and may contain commas, line breaks
+ * and doubled quotes in between. A quote anywhere else is taken literally.
+ * Rows end with LF or CRLF. Rows starting with # are comments and skipped.
+ * <p>
+ * The fields of a row are only valid until the next call of {@link #next()}.
+ */
+final class CsvRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private final InputStream in; // null when reading in place
+    private byte[] buffer;
+    private int position; // next byte to read
+    private int limit; // end of the bytes read so far
+    private boolean eof;
+
+    // quotes are removed in place, so the fields of a row are in
+    // buffer[rowStart, written) at offsets relative to rowStart
+    private int rowStart;
+    private int written;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fields;
+
+    CsvRowReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * creates a reader without input, that reads rows in place once {@link #reset(byte[], int, int)}
+     */
+    CsvRowReader() {
+        this.in = null;
+        this.buffer = new byte[0];
+        this.eof = true;
+    }
+
+    /**
+     * Continues with the rows in text[from, to), without copying them.
+     * Quotes are removed in place, so the bytes of the rows are changed,
+     * those outside of the range are not.
+     */
+    void reset(byte[] text, int from, int to) {
+        if (null != in) {
+            throw new IllegalStateException("reader has an input");
+        }
+        buffer = text;
+        position = from;
+        limit = to;
+        rowStart = from;
+        written = from;
+        fields = 0;
+    }
+
+    /**
+     * skips the rest of the current line as is, like a header line
+     *
+     * @return false if there was nothing left to skip
+     */
+    boolean skipLine() throws IOException {
+        if (position == limit && !fill(position)) {
+            return false;
+        }
+        while (true) {
+            if (position == limit && !fill(position)) {
+                return true;
+            }
+            if (buffer[position++] == '\n') {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * advances to the next row that is not a comment
+     *
+     * @return false at the end of the input
+     */
+    boolean next() throws IOException {
+        while (true) {
+            if (position == limit && !fill(position)) {
+                return false;
+            }
+            if (buffer[position] != '#') {
+                break;
+            }
+            skipLine();
+        }
+        rowStart = position;
+        written = position;
+        fields = 0;
+        int fieldStart = written;
+        int state = FIELD_START;
+        while (true) {
+            if (position == limit) {
+                int before = rowStart;
+                boolean more = fill(rowStart);
+                fieldStart -= before - rowStart;
+                if (!more) {
+                    break;
+                }
+                continue;
+            }
+            byte b = buffer[position++];
+            if (state == QUOTED) {
+                if (b == '"') {
+                    state = QUOTE_IN_QUOTED;
+                }
+                else {
+                    buffer[written++] = b;
+                }
+            }
+            else if (state == QUOTE_IN_QUOTED && b == '"') {
+                buffer[written++] = b;
+                state = QUOTED;
+            }
+            else if (b == ',') {
+                endField(fieldStart);
+                fieldStart = written;
+                state = FIELD_START;
+            }
+            else if (b == '\n') {
+                break;
+            }
+            else if (b == '"' && state == FIELD_START) {
+                state = QUOTED;
+            }
+            else {
+                buffer[written++] = b;
+                state = UNQUOTED;
+            }
+        }
+        if (state == UNQUOTED && buffer[written-1] == '\r') {
+            written--;
+        }
+        endField(fieldStart);
+        return true;
+    }
+
+    /**
+     * Finds where the last complete row ends, by the same rules as {@link #next()},
+     * so that the rows up to there can be read on their own.
+     *
+     * @param text csv bytes
+     * @param from the start of a row in text
+     * @param to the end of the bytes to look at
+     * @return the offset after the line break of the last row that ends before to, -1 if none does
+     */
+    static int endOfLastRow(byte[] text, int from, int to) {
+        int end = -1;
+        int state = FIELD_START;
+        boolean rowStart = true;
+        boolean comment = false;
+        for (int i = from; i < to; i++) {
+            byte b = text[i];
+            if (rowStart) {
+                comment = b == '#';
+                rowStart = false;
+            }
+            if (comment) {
+                if (b == '\n') {
+                    end = i + 1;
+                    rowStart = true;
+                }
+            }
+            else if (state == QUOTED) {
+                if (b == '"') {
+                    state = QUOTE_IN_QUOTED;
+                }
+            }
+            else if (state == QUOTE_IN_QUOTED && b == '"') {
+                state = QUOTED;
+            }
+            else if (b == ',') {
+                state = FIELD_START;
+            }
+            else if (b == '\n') {
+                end = i + 1;
+                rowStart = true;
+                state = FIELD_START;
+            }
+            else if (b == '"' && state == FIELD_START) {
+                state = QUOTED;
+            }
+            else {
+                state = UNQUOTED;
+            }
+        }
+        return end;
+    }
+
+    int fields() {
+        return fields;
+    }
+
+    boolean isEmpty(int field) {
+        return fieldStarts[field] == fieldEnds[field];
+    }
+
+    String string(int field) {
+        return new String(buffer, start(field), length(field), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the buffer holding the fields of the current row
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the offset of the field in {@link #buffer()}
+     */
+    int start(int field) {
+        return rowStart + fieldStarts[field];
+    }
+
+    int length(int field) {
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    private void endField(int fieldStart) {
+        if (fields == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fields * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fields * 2);
+        }
+        fieldStarts[fields] = fieldStart - rowStart;
+        fieldEnds[fields] = written - rowStart;
+        fields++;
+    }
+
+    /**
+     * reads more bytes, after moving the bytes from keepFrom on to the
+     * start of the buffer, or into a larger buffer if they fill it
+     *
+     * @return false at the end of the input
+     */
+    private boolean fill(int keepFrom) throws IOException {
+        if (eof) {
+            return false;
+        }
+        int kept = limit - keepFrom;
+        if (kept == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        else if (keepFrom > 0) {
+            System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+        }
+        position -= keepFrom;
+        rowStart -= keepFrom;
+        written -= keepFrom;
+        limit = kept;
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reads the binary export format of {@link EmployeeBinaryWriter} as the csv
+ * {@link EmployeeCsvWriter} writes for the same employees, one batch at a
+ * time. The upload then validates and writes the employees exactly like
+ * those of a csv file.
+ */
+final class EmployeeBinaryReader extends InputStream {
+
+    // bounds for corrupt input, far above what the writer produces
+    private static final int MAX_BATCH_SIZE = 64 * 1024;
+    private static final int MAX_STRING_LENGTH = 64 * 1024;
+    private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+
+    private final DataInputStream in;
+    private final Buffer csv = new Buffer();
+    private final EmployeeCsvWriter writer;
+    private byte[] string = new byte[256];
+    private String[] ids = new String[0];
+    private String[] logins = new String[0];
+    private String[] names = new String[0];
+    private int[] salaries = new int[0];
+    private int position;
+    private boolean end;
+
+    EmployeeBinaryReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        byte[] magic = new byte[EmployeeBinaryWriter.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, EmployeeBinaryWriter.MAGIC)) {
+            throw new InvalidEmployeeDataException("Invalid binary export");
+        }
+        int version = this.in.read();
+        if (version != EmployeeBinaryWriter.VERSION) {
+            throw new InvalidEmployeeDataException("Unsupported binary export version "+version);
+        }
+        writer = new EmployeeCsvWriter(csv);
+        writer.finish();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return csv.bytes()[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, csv.size() - position);
+        System.arraycopy(csv.bytes(), position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return false at the end of the input
+     */
+    private boolean fill() throws IOException {
+        while (position == csv.size()) {
+            if (end) {
+                return false;
+            }
+            csv.reset();
+            position = 0;
+            readBatch();
+        }
+        return true;
+    }
+
+    private void readBatch() throws IOException {
+        int rows = in.readInt();
+        if (rows == 0) {
+            end = true;
+            return;
+        }
+        else if (rows < 0 || rows > MAX_BATCH_SIZE) {
+            throw new InvalidEmployeeDataException("Invalid binary export");
+        }
+        if (ids.length < rows) {
+            ids = new String[rows];
+            logins = new String[rows];
+            names = new String[rows];
+        }
+        readStrings(ids, rows);
+        readStrings(logins, rows);
+        readStrings(names, rows);
+        if (salaries.length < rows) {
+            salaries = new int[rows];
+        }
+        Arrays.fill(salaries, 0, rows, 0);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            for (int i = 0; i < rows; i++) {
+                salaries[i] |= in.readUnsignedByte() << shift;
+            }
+        }
+        long startDate = 0;
+        for (int i = 0; i < rows; i++) {
+            int delta = readVarint();
+            startDate += (delta >>> 1) ^ -(delta & 1);
+            if (startDate < MIN_EPOCH_DAY || startDate > MAX_EPOCH_DAY) {
+                throw new InvalidEmployeeDataException("Invalid binary export");
+            }
+            writer.handle(ids[i], logins[i], names[i], Float.intBitsToFloat(salaries[i]), LocalDate.ofEpochDay(startDate));
+        }
+        writer.finish();
+    }
+
+    private void readStrings(String[] column, int rows) throws IOException {
+        int length = 0;
+        for (int i = 0; i < rows; i++) {
+            int shared = readVarint();
+            int rest = readVarint();
+            if (shared > length || rest < 0 || shared + rest > MAX_STRING_LENGTH) {
+                throw new InvalidEmployeeDataException("Invalid binary export");
+            }
+            length = shared + rest;
+            if (string.length < length) {
+                string = Arrays.copyOf(string, Math.max(length, string.length * 2));
+            }
+            in.readFully(string, shared, rest);
+            column[i] = new String(string, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+            else if (shift == 28) {
+                throw new InvalidEmployeeDataException("Invalid binary export");
+            }
+        }
+    }
+
+    /**
+     * gives access to the bytes written so far without copying them
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(128 * 1024);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Writes employees in the binary export format: the magic bytes "EMPB" and
+ * a version byte, followed by batches of up to {@link #BATCH_SIZE} rows and
+ * an empty batch at the end. A batch starts with its number of rows as an
+ * int and holds its rows column by column:
+ * <ol>
+ *     <li>the ids, logins and names, each as the varint length of the prefix
+ *     it shares with the value of the row before and the varint length and
+ *     UTF-8 bytes of the rest</li>
+ *     <li>the salaries as big endian floats, split into four planes of the
+ *     first, second, third and fourth bytes</li>
+ *     <li>the start dates as zig-zag varints of the days since the start date
+ *     of the row before, or since 1970-01-01 for the first row</li>
+ * </ol>
+ * Similar values are next to each other, so the columns compress well with
+ * gzip. Read back by {@link EmployeeBinaryReader}.
+ */
+public final class EmployeeBinaryWriter implements EmployeeExportWriter {
+
+    static final byte[] MAGIC = {'E', 'M', 'P', 'B'};
+    static final int VERSION = 1;
+    static final int BATCH_SIZE = 1024;
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream columns = new ByteArrayOutputStream(64 * BATCH_SIZE);
+    private final String[] ids = new String[BATCH_SIZE];
+    private final String[] logins = new String[BATCH_SIZE];
+    private final String[] names = new String[BATCH_SIZE];
+    private final float[] salaries = new float[BATCH_SIZE];
+    private final int[] startDates = new int[BATCH_SIZE];
+    private int rows;
+
+    public EmployeeBinaryWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    @Override
+    public void handle(String id, String login, String name, float salary, LocalDate startDate) throws IOException {
+        ids[rows] = id;
+        logins[rows] = login;
+        names[rows] = name;
+        salaries[rows] = salary;
+        startDates[rows] = (int) startDate.toEpochDay();
+        if (++rows == BATCH_SIZE) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        out.writeInt(0);
+        out.flush();
+    }
+
+    private void writeBatch() throws IOException {
+        out.writeInt(rows);
+        columns.reset();
+        writeStrings(ids);
+        writeStrings(logins);
+        writeStrings(names);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            for (int i = 0; i < rows; i++) {
+                columns.write(Float.floatToIntBits(salaries[i]) >>> shift);
+            }
+        }
+        for (int i = 0, previous = 0; i < rows; previous = startDates[i++]) {
+            int delta = startDates[i] - previous;
+            writeVarint((delta << 1) ^ (delta >> 31));
+        }
+        columns.writeTo(out);
+        rows = 0;
+    }
+
+    private void writeStrings(String[] column) {
+        byte[] previous = new byte[0];
+        for (int i = 0; i < rows; i++) {
+            byte[] bytes = column[i].getBytes(StandardCharsets.UTF_8);
+            int shared = Arrays.mismatch(previous, bytes);
+            if (shared < 0) {
+                shared = bytes.length;
+            }
+            writeVarint(shared);
+            writeVarint(bytes.length - shared);
+            columns.write(bytes, shared, bytes.length - shared);
+            previous = bytes;
+            column[i] = null;
+        }
+    }
+
+    private void writeVarint(int value) {
+        while ((value & ~0x7f) != 0) {
+            columns.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        columns.write(value);
+    }
+}
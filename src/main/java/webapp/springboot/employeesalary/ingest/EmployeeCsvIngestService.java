@@ -0,0 +1,214 @@
+package webapp.springboot.employeesalary.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Reads an employees CSV file and writes its rows into the database.
+ * <p>
+ * The file is validated in blocks of rows by a {@link ParallelCsvValidator},
+ * on a fork join pool of {@code employees.upload.parallelism} threads, one
+ * per core by default. Rows are read by a {@link CsvRowReader}, so the file
+ * is UTF-8 and fields may be quoted. Duplicate ids and logins inside the file
+ * are detected with hash lookups, and the logins are checked against the
+ * database with one query per chunk of {@code employees.upload.chunk-size}
+ * rows. Nothing is written unless the whole file is valid.
+ * <p>
+ * Large files are ingested in two passes instead, see {@link UploadJobService}:
+ * {@link #validate(InputStream, IngestProgress)} and then
+ * {@link #write(InputStream, IngestProgress)}, which commits a chunk at a
+ * time, so that the employees never have to be held in memory all at once.
+ * <p>
+ * Bytes read, rows validated and written and rejected rows are counted in
+ * {@code employees.ingest.*} meters, see {@link IngestMetrics}.
+ * <p>
+ * Every exported format is accepted as well, gzip compressed or not, and
+ * read as csv, see {@link EmployeeExportFormat#decode(InputStream)}. The
+ * bytes counted are those before decompression.
+ */
+@Service
+public class EmployeeCsvIngestService implements InitializingBean, DisposableBean {
+
+    private static final int COLUMNS = 5;
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Value("${employees.upload.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${employees.upload.parallelism:0}")
+    private int parallelism;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    private ForkJoinPool pool;
+    private ParallelCsvValidator validator;
+    private IngestMetrics metrics;
+
+    @Override
+    public void afterPropertiesSet() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        validator = new ParallelCsvValidator(pool, repository, chunkSize, BLOCK_SIZE);
+        metrics = new IngestMetrics(meterRegistry);
+        new ExecutorServiceMetrics(pool, "upload.validation", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Validates every row of the csv and then inserts or updates them
+     * in one batched transaction.
+     *
+     * @param csv the csv content, starting with a header line
+     * @return the number of employees written, 0 if the file has no rows
+     * @throws IOException if the content can not be read
+     * @throws InvalidEmployeeDataException if any row is invalid, nothing is written in this case
+     */
+    public int ingest(InputStream csv) throws IOException, InvalidEmployeeDataException {
+        List<Employee> employees = readAndValidate(csv);
+        try {
+            repository.upsertEmployees(employees);
+        }
+        catch (DataIntegrityViolationException e) {
+            throw loginTakenMeanwhile();
+        }
+        metrics.written(employees.size());
+        return employees.size();
+    }
+
+    /**
+     * Parses and validates the csv rows without writing anything.
+     *
+     * @param csv the csv content, starting with a header line
+     * @return the valid employees in file order
+     * @throws IOException if the content can not be read
+     * @throws InvalidEmployeeDataException at the first invalid row
+     */
+    public List<Employee> readAndValidate(InputStream csv) throws IOException, InvalidEmployeeDataException {
+        List<Employee> employees = new ArrayList<>();
+        validate(csv, IngestProgress.NONE, employees);
+        return employees;
+    }
+
+    /**
+     * Validates every row of the csv like {@link #readAndValidate(InputStream)},
+     * but keeps only the ids and logins in memory, not the employees.
+     *
+     * @param csv the csv content, starting with a header line
+     * @param progress notified after every block of rows
+     * @return the number of valid rows
+     * @throws IOException if the content can not be read
+     * @throws InvalidEmployeeDataException at the first invalid row
+     */
+    public long validate(InputStream csv, IngestProgress progress) throws IOException, InvalidEmployeeDataException {
+        return validate(csv, progress, null);
+    }
+
+    private long validate(InputStream csv, IngestProgress progress, List<Employee> employees) throws IOException {
+        try {
+            long rows = validator.validate(EmployeeExportFormat.decode(metrics.counting(csv)), progress, employees);
+            metrics.validated(rows);
+            return rows;
+        }
+        catch (InvalidEmployeeDataException e) {
+            metrics.rejected(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts or updates the rows of a csv that passed {@link #validate(InputStream, IngestProgress)}
+     * a chunk at a time, each chunk in a transaction of its own. Neither the
+     * employees nor their changes are held in memory for longer than a chunk,
+     * however large the file is.
+     *
+     * @param csv the csv content, starting with a header line
+     * @param progress notified after every chunk of rows written
+     * @return the number of employees written
+     * @throws IOException if the content can not be read
+     * @throws InvalidEmployeeDataException if another write took a login of the csv after it was validated,
+     * the chunks before, as counted by the progress, are written in this case
+     */
+    public long write(InputStream csv, IngestProgress progress) throws IOException, InvalidEmployeeDataException {
+        long[] rows = new long[1];
+        try {
+            read(csv, chunk -> {
+                repository.upsertEmployees(chunk);
+                rows[0] += chunk.size();
+                progress.written(chunk.size());
+                metrics.written(chunk.size());
+            });
+        }
+        catch (DataIntegrityViolationException e) {
+            throw loginTakenMeanwhile();
+        }
+        return rows[0];
+    }
+
+    /**
+     * The unique login is the only constraint a validated row can violate,
+     * when a concurrent write took the login between validation and write.
+     */
+    private InvalidEmployeeDataException loginTakenMeanwhile() {
+        InvalidEmployeeDataException e = new InvalidEmployeeDataException("Employee login not unique");
+        metrics.rejected(e);
+        return e;
+    }
+
+    /**
+     * Parses the csv rows in file order into chunks of
+     * {@code employees.upload.chunk-size}. A chunk is only valid during the call.
+     */
+    private void read(InputStream csv, Consumer<List<Employee>> chunks) throws IOException {
+        List<Employee> chunk = new ArrayList<>(chunkSize);
+        CsvRowReader reader = new CsvRowReader(EmployeeExportFormat.decode(csv));
+        reader.skipLine();
+        while (reader.next()) {
+            chunk.add(toEmployee(reader));
+            if (chunk.size() >= chunkSize) {
+                chunks.accept(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.accept(chunk);
+        }
+    }
+
+    static Employee toEmployee(CsvRowReader row) throws InvalidEmployeeDataException {
+        if (row.fields() < COLUMNS) {
+            throw new InvalidEmployeeDataException("Empty cell value found");
+        }
+        for (int i = 0; i < COLUMNS; i++) {
+            if (row.isEmpty(i)) {
+                throw new InvalidEmployeeDataException("Empty cell value found");
+            }
+        }
+        return new Employee(row.string(0),row.string(1),row.string(2),
+                EmployeeFields.parseSalaryOrThrow(row.buffer(),row.start(3),row.length(3)),
+                EmployeeFields.parseDateOrThrow(row.buffer(),row.start(4),row.length(4)));
+    }
+}
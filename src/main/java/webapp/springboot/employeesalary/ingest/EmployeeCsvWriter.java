@@ -0,0 +1,80 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Writes employees as a UTF-8 csv in the format of the upload, so that the
+ * output can be uploaded again as is. Salaries are written with
+ * {@link Float#toString(float)}, which reads back to the same float, and
+ * dates as yyyy-MM-dd. Fields that {@link CsvRowReader} would not read back
+ * literally are quoted.
+ */
+public final class EmployeeCsvWriter implements EmployeeExportWriter {
+
+    static final String HEADER = "id,login,name,salary,startDate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer out;
+
+    public EmployeeCsvWriter(OutputStream out) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.out.write(HEADER);
+        this.out.write('\n');
+    }
+
+    @Override
+    public void handle(String id, String login, String name, float salary, LocalDate startDate) throws IOException {
+        field(id);
+        out.write(',');
+        field(login);
+        out.write(',');
+        field(name);
+        out.write(',');
+        out.write(Float.toString(salary));
+        out.write(',');
+        out.write(startDate.toString());
+        out.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.flush();
+    }
+
+    private void field(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * a leading quote starts a quoted field and a leading # a comment row
+     */
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (first == '"' || first == '#') {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The formats the employees are exported in, each of which can be uploaded
+ * again, as is or compressed with gzip, see {@link #decode(InputStream)}.
+ */
+public enum EmployeeExportFormat {
+
+    /**
+     * the csv of the upload, see {@link EmployeeCsvWriter}
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public EmployeeExportWriter writer(OutputStream out) throws IOException {
+            return new EmployeeCsvWriter(out);
+        }
+    },
+
+    /**
+     * batches of columns, see {@link EmployeeBinaryWriter}
+     */
+    BINARY("application/octet-stream", "bin") {
+        @Override
+        public EmployeeExportWriter writer(OutputStream out) throws IOException {
+            return new EmployeeBinaryWriter(out);
+        }
+    };
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+
+    private final String contentType;
+    private final String extension;
+
+    EmployeeExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public abstract EmployeeExportWriter writer(OutputStream out) throws IOException;
+
+    /**
+     * @param name the name of a format, in any case
+     * @return the format or {@literal null} if there is no such format
+     */
+    public static EmployeeExportFormat parse(String name) {
+        for (EmployeeExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recognizes an uploaded file by its first bytes. A gzip file is
+     * decompressed and a binary export read as csv, anything else is taken
+     * to be a csv already.
+     *
+     * @param in the uploaded file
+     * @return the file as csv
+     * @throws IOException if the file can not be read
+     */
+    public static InputStream decode(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, EmployeeBinaryWriter.MAGIC.length);
+        if (startsWith(pushback, GZIP_MAGIC)) {
+            pushback = new PushbackInputStream(new GZIPInputStream(pushback, 64 * 1024),
+                    EmployeeBinaryWriter.MAGIC.length);
+        }
+        return startsWith(pushback, EmployeeBinaryWriter.MAGIC) ? new EmployeeBinaryReader(pushback) : pushback;
+    }
+
+    private static boolean startsWith(PushbackInputStream in, byte[] prefix) throws IOException {
+        byte[] start = new byte[prefix.length];
+        int length = 0;
+        while (length < start.length) {
+            int read = in.read(start, length, start.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        in.unread(start, 0, length);
+        return length == prefix.length && Arrays.equals(start, prefix);
+    }
+}
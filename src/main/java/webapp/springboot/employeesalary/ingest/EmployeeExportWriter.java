@@ -0,0 +1,17 @@
+package webapp.springboot.employeesalary.ingest;
+
+import webapp.springboot.employeesalary.persistent.repository.EmployeeRowHandler;
+
+import java.io.IOException;
+
+/**
+ * Writes streamed employee rows in one of the {@link EmployeeExportFormat}s.
+ */
+public interface EmployeeExportWriter extends EmployeeRowHandler {
+
+    /**
+     * writes the buffered rows and the end of the export, without closing
+     * the underlying stream
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,195 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Parsing and validation of the individual employee fields, shared by the
+ * CSV upload and the single employee create/update requests.
+ * <p>
+ * The CSV upload parses salaries and dates straight from the bytes of a row.
+ * Neither parser throws on invalid input internally, and the common salaries
+ * and all dates are parsed without creating garbage.
+ */
+public final class EmployeeFields {
+
+    public static final DateTimeFormatter YYYY_MM_DD = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final DateTimeFormatter DD_MMM_YY = DateTimeFormatter.ofPattern("dd-MMM-yy", Locale.ENGLISH);
+    public static final DateTimeFormatter[] VALID_DATE_FORMATS = {YYYY_MM_DD,DD_MMM_YY};
+
+    private static final byte[][] MONTHS = {
+            ascii("Jan"), ascii("Feb"), ascii("Mar"), ascii("Apr"), ascii("May"), ascii("Jun"),
+            ascii("Jul"), ascii("Aug"), ascii("Sep"), ascii("Oct"), ascii("Nov"), ascii("Dec")};
+
+    // a decimal of at most 24 bits with at most 10 fraction digits is exactly
+    // mantissa / 10^fractionDigits in float arithmetic
+    private static final int MAX_EXACT_MANTISSA = 1 << 24;
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private EmployeeFields() {}
+
+    /**
+     * parses a salary, which must be a non negative decimal within the range of a float
+     *
+     * @param salary the salary text
+     * @return the salary
+     * @throws InvalidEmployeeDataException if the salary is missing, malformed, negative or too large
+     */
+    public static float parseSalaryOrThrow(String salary) throws InvalidEmployeeDataException {
+        try {
+            float value = Float.parseFloat(salary);
+            if (Float.isFinite(value) && value >= 0) {
+                return value;
+            }
+        }
+        catch (NumberFormatException|NullPointerException e) {}
+        throw new InvalidEmployeeDataException("Invalid salary");
+    }
+
+    /**
+     * parses a salary like {@link #parseSalaryOrThrow(String)}. Plain decimals
+     * like 1234.50 are converted directly, anything else as a String.
+     *
+     * @param text the bytes of a csv row
+     * @param offset the start of the salary in text
+     * @param length the length of the salary
+     * @return the salary
+     * @throws InvalidEmployeeDataException if the salary is malformed, negative or too large
+     */
+    public static float parseSalaryOrThrow(byte[] text, int offset, int length) throws InvalidEmployeeDataException {
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = text[i];
+            if (b >= '0' && b <= '9' && mantissa < MAX_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            }
+            else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            }
+            else {
+                return parseSalaryOrThrow(new String(text, offset, length, StandardCharsets.ISO_8859_1));
+            }
+        }
+        if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseSalaryOrThrow(new String(text, offset, length, StandardCharsets.ISO_8859_1));
+        }
+        return fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    }
+
+    /**
+     * parses a start date in one of the {@link #VALID_DATE_FORMATS}
+     *
+     * @param date the date text
+     * @return the date
+     * @throws InvalidEmployeeDataException if the date is missing or in no valid format
+     */
+    public static LocalDate parseDateOrThrow(String date) throws InvalidEmployeeDataException {
+        LocalDate value = parseDate(date);
+        if (null == value) {
+            throw new InvalidEmployeeDataException("Invalid date");
+        }
+        return value;
+    }
+
+    /**
+     * parses a start date in one of the {@link #VALID_DATE_FORMATS}
+     *
+     * @param text the bytes of a csv row
+     * @param offset the start of the date in text
+     * @param length the length of the date
+     * @return the date
+     * @throws InvalidEmployeeDataException if the date is in no valid format
+     */
+    public static LocalDate parseDateOrThrow(byte[] text, int offset, int length) throws InvalidEmployeeDataException {
+        LocalDate value = parseDate(text, offset, length);
+        if (null == value) {
+            throw new InvalidEmployeeDataException("Invalid date");
+        }
+        return value;
+    }
+
+    /**
+     * parses a start date in one of the {@link #VALID_DATE_FORMATS}
+     *
+     * @param date the date text
+     * @return the date or {@literal null} if it can not be parsed
+     */
+    public static LocalDate parseDate(String date) {
+        if (null == date) {
+            return null;
+        }
+        // characters beyond ISO-8859-1 turn into '?', which is invalid in a date anyway
+        byte[] text = date.getBytes(StandardCharsets.ISO_8859_1);
+        return parseDate(text, 0, text.length);
+    }
+
+    /**
+     * parses a start date in one of the {@link #VALID_DATE_FORMATS}, which are
+     * told apart by their length. Like the formatters, a day past the end of
+     * the month is taken as the last day of the month, and two digit years
+     * are in 2000-2099.
+     *
+     * @param text the bytes of a csv row
+     * @param offset the start of the date in text
+     * @param length the length of the date
+     * @return the date or {@literal null} if it can not be parsed
+     */
+    public static LocalDate parseDate(byte[] text, int offset, int length) {
+        if (length == 10 && text[offset+4] == '-' && text[offset+7] == '-') {
+            return date(digits(text, offset, 4), digits(text, offset+5, 2), digits(text, offset+8, 2));
+        }
+        else if (length == 9 && text[offset+2] == '-' && text[offset+6] == '-') {
+            int year = digits(text, offset+7, 2);
+            return date(year < 0 ? year : 2000 + year, month(text, offset+3), digits(text, offset, 2));
+        }
+        return null;
+    }
+
+    private static LocalDate date(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        return LocalDate.of(year, month, Math.min(day, Month.of(month).length(Year.isLeap(year))));
+    }
+
+    /**
+     * @return the value of count decimal digits, -1 if any is no digit
+     */
+    private static int digits(byte[] text, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return the month of an English three letter abbreviation like Nov, -1 if there is none
+     */
+    private static int month(byte[] text, int offset) {
+        for (int m = 0; m < MONTHS.length; m++) {
+            if (text[offset] == MONTHS[m][0] && text[offset+1] == MONTHS[m][1] && text[offset+2] == MONTHS[m][2]) {
+                return m + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
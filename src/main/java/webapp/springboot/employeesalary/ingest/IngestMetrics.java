@@ -0,0 +1,79 @@
+package webapp.springboot.employeesalary.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counters of the csv ingest, rows per second are their rate:
+ * <ul>
+ * <li>{@code employees.ingest.bytes} read while validating</li>
+ * <li>{@code employees.ingest.rows} validated and written, by stage. Written
+ * rows are counted as they are sent to the database, rows of an upload that
+ * fails later are rolled back but stay counted</li>
+ * <li>{@code employees.ingest.rejected} rows, by the reason of the error. An
+ * upload is rejected at its first invalid row, so this counts uploads too</li>
+ * </ul>
+ */
+final class IngestMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter bytes;
+    private final Counter validated;
+    private final Counter written;
+
+    IngestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.bytes = Counter.builder("employees.ingest.bytes").baseUnit(BaseUnits.BYTES)
+                .description("Bytes of csv read while validating").register(registry);
+        this.validated = rows("validated");
+        this.written = rows("written");
+    }
+
+    private Counter rows(String stage) {
+        return Counter.builder("employees.ingest.rows").baseUnit("rows").tag("stage", stage)
+                .description("Csv rows validated and written").register(registry);
+    }
+
+    /**
+     * @return the csv, counting the bytes read from it
+     */
+    InputStream counting(InputStream csv) {
+        return new FilterInputStream(csv) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytes.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytes.increment(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    void validated(long rows) {
+        validated.increment(rows);
+    }
+
+    void written(long rows) {
+        written.increment(rows);
+    }
+
+    void rejected(InvalidEmployeeDataException e) {
+        Counter.builder("employees.ingest.rejected").baseUnit("rows").tag("reason", e.getReason())
+                .description("Csv rows rejected, by reason").register(registry).increment();
+    }
+}
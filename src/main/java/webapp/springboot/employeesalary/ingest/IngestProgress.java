@@ -0,0 +1,24 @@
+package webapp.springboot.employeesalary.ingest;
+
+/**
+ * Receives the progress of an ingest, a chunk of rows at a time.
+ */
+public interface IngestProgress {
+
+    IngestProgress NONE = new IngestProgress() {};
+
+    /**
+     * @param rows the number of rows just parsed
+     */
+    default void parsed(int rows) {}
+
+    /**
+     * @param rows the number of rows just validated, including their logins in the database
+     */
+    default void validated(int rows) {}
+
+    /**
+     * @param rows the number of rows just inserted or updated
+     */
+    default void written(int rows) {}
+}
@@ -0,0 +1,32 @@
+package webapp.springboot.employeesalary.ingest;
+
+/**
+ * Thrown when employee input (a CSV row or a form submission) is rejected.
+ * The message is meant to be returned as is to the client.
+ */
+public class InvalidEmployeeDataException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+
+    public InvalidEmployeeDataException(String message) {
+        this(message, message);
+    }
+
+    /**
+     * @param reason the kind of error without the values of the row, for
+     *               messages that name them
+     */
+    public InvalidEmployeeDataException(String message, String reason) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * @return the kind of error, one of a few fixed strings
+     */
+    public String getReason() {
+        return reason;
+    }
+}
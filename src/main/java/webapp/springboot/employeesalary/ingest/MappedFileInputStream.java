@@ -0,0 +1,93 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through memory mapped regions of at most regionSize bytes,
+ * so a file of any size is read straight from the page cache, without a
+ * copy through a heap buffer of its own. The mapping is released when the
+ * stream is garbage collected.
+ */
+final class MappedFileInputStream extends InputStream {
+
+    private static final long REGION_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long regionSize;
+    private long regionStart;
+    private MappedByteBuffer region;
+
+    private MappedFileInputStream(FileChannel channel, long regionSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.regionSize = regionSize;
+        this.region = map(0);
+    }
+
+    static MappedFileInputStream open(Path file) throws IOException {
+        return open(file, REGION_SIZE);
+    }
+
+    static MappedFileInputStream open(Path file, long regionSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedFileInputStream(channel, regionSize);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextRegion() ? region.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextRegion()) {
+            return -1;
+        }
+        int read = Math.min(len, region.remaining());
+        region.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return region.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return false if the whole file has been read
+     */
+    private boolean nextRegion() throws IOException {
+        while (!region.hasRemaining()) {
+            if (regionStart + region.capacity() >= size) {
+                return false;
+            }
+            region = map(regionStart + region.capacity());
+        }
+        return true;
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        regionStart = start;
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+    }
+}
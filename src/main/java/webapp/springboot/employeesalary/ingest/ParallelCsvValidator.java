@@ -0,0 +1,311 @@
+package webapp.springboot.employeesalary.ingest;
+
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Validates the rows of an employees csv on a fork join pool.
+ * <p>
+ * The csv is split into blocks of whole rows. Each block is parsed and its
+ * logins checked against the database, in parallel with the other blocks.
+ * Then the ids and logins of all blocks are checked for duplicates, in
+ * parallel as well: every task takes the keys of one share of the hash codes,
+ * in file order.
+ * <p>
+ * The result is that of validating row by row. If several rows are invalid,
+ * the error is the one a sequential pass would have met first. Logins owned
+ * by other employees are reported at the end of their chunk of
+ * {@code employees.upload.chunk-size} rows.
+ */
+final class ParallelCsvValidator {
+
+    // order of the checks of a row in a sequential pass
+    private static final int PARSE = 0;
+    private static final int DUPLICATE_ID = 1;
+    private static final int DUPLICATE_LOGIN = 2;
+    private static final int LOGIN_OWNED = 3;
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final ForkJoinPool pool;
+    private final EmployeesRepository repository;
+    private final int chunkSize;
+    private final int blockSize;
+    // every worker reads its blocks with the same reader
+    private final ThreadLocal<CsvRowReader> readers = ThreadLocal.withInitial(CsvRowReader::new);
+
+    ParallelCsvValidator(ForkJoinPool pool, EmployeesRepository repository, int chunkSize, int blockSize) {
+        this.pool = pool;
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param csv the csv content, starting with a header line
+     * @param progress notified after every block
+     * @param employees receives the valid employees in file order, {@literal null} to only count them
+     * @return the number of valid rows
+     * @throws IOException if the content can not be read
+     * @throws InvalidEmployeeDataException with the first error in the file
+     */
+    long validate(InputStream csv, IngestProgress progress, List<Employee> employees)
+            throws IOException, InvalidEmployeeDataException {
+        int shares = pool.getParallelism();
+        boolean keepEmployees = null != employees;
+        CsvBlockReader reader = new CsvBlockReader(csv, blockSize);
+        List<Block> blocks = new ArrayList<>();
+        Deque<ForkJoinTask<Block>> parsing = new ArrayDeque<>();
+        boolean parseError = false;
+        // at most two blocks per thread are read ahead, rows after an unparsable row do not matter
+        while (!parseError) {
+            if (parsing.size() >= 2 * shares) {
+                parseError = collect(parsing.poll().join(), blocks, progress);
+                continue;
+            }
+            CsvBlockReader.Block block = reader.next();
+            if (null == block) {
+                break;
+            }
+            parsing.add(pool.submit(() -> {
+                try {
+                    return parse(block, keepEmployees, shares);
+                }
+                finally {
+                    reader.release(block);
+                }
+            }));
+        }
+        while (!parseError && !parsing.isEmpty()) {
+            parseError = collect(parsing.poll().join(), blocks, progress);
+        }
+        parsing.forEach(task -> task.cancel(false));
+
+        long[] offsets = new long[blocks.size()];
+        long rows = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            offsets[i] = rows;
+            rows += blocks.get(i).rows;
+        }
+        List<ForkJoinTask<RowError>> duplicates = new ArrayList<>(2 * shares);
+        for (int share = 0; share < shares; share++) {
+            int s = share;
+            duplicates.add(pool.submit(() -> firstDuplicateId(blocks, offsets, s)));
+            duplicates.add(pool.submit(() -> firstDuplicateLogin(blocks, offsets, s)));
+        }
+
+        RowError first = null;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (null != block.parseError) {
+                first = RowError.first(first, new RowError(offsets[i] + block.rows, PARSE, block.parseError));
+            }
+            if (block.ownedLoginRow >= 0) {
+                // a sequential pass checks the logins when a chunk is complete, or at the end of the file
+                long row = offsets[i] + block.ownedLoginRow;
+                long chunkEnd = (row / chunkSize + 1) * chunkSize - 1;
+                first = RowError.first(first, new RowError(parseError ? chunkEnd : Math.min(chunkEnd, rows - 1),
+                        LOGIN_OWNED, "Employee login not unique"));
+            }
+        }
+        for (ForkJoinTask<RowError> duplicate : duplicates) {
+            first = RowError.first(first, duplicate.join());
+        }
+        if (null != first) {
+            throw new InvalidEmployeeDataException(first.message, first.reason());
+        }
+        if (keepEmployees) {
+            blocks.forEach(block -> employees.addAll(block.employees));
+        }
+        return rows;
+    }
+
+    /**
+     * @return whether the block has an unparsable row
+     */
+    private static boolean collect(Block block, List<Block> blocks, IngestProgress progress) {
+        blocks.add(block);
+        progress.parsed(block.rows);
+        if (null == block.parseError && block.ownedLoginRow < 0) {
+            progress.validated(block.rows);
+        }
+        return null != block.parseError;
+    }
+
+    private Block parse(CsvBlockReader.Block bytes, boolean keepEmployees, int shares) {
+        List<Employee> employees = new ArrayList<>();
+        String parseError = null;
+        CsvRowReader reader = readers.get();
+        reader.reset(bytes.bytes, bytes.from, bytes.to);
+        try {
+            while (reader.next()) {
+                employees.add(EmployeeCsvIngestService.toEmployee(reader));
+            }
+        }
+        catch (InvalidEmployeeDataException e) {
+            parseError = e.getMessage();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            // the block array is reused by the reader of the blocks
+            reader.reset(NO_BYTES, 0, 0);
+        }
+
+        Block block = new Block(employees.size(), parseError);
+        for (int i = 0; i < block.rows; i++) {
+            block.ids[i] = employees.get(i).getId();
+            block.logins[i] = employees.get(i).getLogin();
+        }
+        block.idRows = share(block.ids, block.rows, shares);
+        block.loginRows = share(block.logins, block.rows, shares);
+        block.ownedLoginRow = firstOwnedLogin(employees);
+        block.employees = keepEmployees ? employees : null;
+        return block;
+    }
+
+    /**
+     * A login is only allowed if nobody owns it in the database yet, or the
+     * owner is the very employee the row is updating.
+     *
+     * @return the first row with a login of another employee, -1 if there is none
+     */
+    private int firstOwnedLogin(List<Employee> employees) {
+        for (int from = 0; from < employees.size(); from += chunkSize) {
+            List<Employee> chunk = employees.subList(from, Math.min(from + chunkSize, employees.size()));
+            Set<String> logins = new HashSet<>(chunk.size() * 2);
+            chunk.forEach(e -> logins.add(e.getLogin()));
+            Map<String,String> owners = repository.findIdsByLogins(logins);
+            for (int i = 0; i < chunk.size(); i++) {
+                String owner = owners.get(chunk.get(i).getLogin());
+                if (null != owner && !owner.equals(chunk.get(i).getId())) {
+                    return from + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static RowError firstDuplicateId(List<Block> blocks, long[] offsets, int share) {
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            for (int row : block.idRows[share]) {
+                if (!ids.add(block.ids[row])) {
+                    return new RowError(offsets[i] + row, DUPLICATE_ID,
+                            "Duplicate entry found with id '"+block.ids[row]+"'");
+                }
+            }
+        }
+        return null;
+    }
+
+    private static RowError firstDuplicateLogin(List<Block> blocks, long[] offsets, int share) {
+        Map<String,String> idsByLogin = new HashMap<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            for (int row : block.loginRows[share]) {
+                String other = idsByLogin.putIfAbsent(block.logins[row], block.ids[row]);
+                if (null != other) {
+                    return new RowError(offsets[i] + row, DUPLICATE_LOGIN,
+                            "Duplicate login found for employees with id '"+other+"' and '"+block.ids[row]+"'");
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the rows of every share of the key hash codes, in file order
+     */
+    private static int[][] share(String[] keys, int rows, int shares) {
+        int[] counts = new int[shares];
+        int[] shareOfRow = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            int h = keys[row].hashCode();
+            shareOfRow[row] = Math.floorMod(h ^ (h >>> 16), shares);
+            counts[shareOfRow[row]]++;
+        }
+        int[][] rowsByShare = new int[shares][];
+        for (int share = 0; share < shares; share++) {
+            rowsByShare[share] = new int[counts[share]];
+            counts[share] = 0;
+        }
+        for (int row = 0; row < rows; row++) {
+            int share = shareOfRow[row];
+            rowsByShare[share][counts[share]++] = row;
+        }
+        return rowsByShare;
+    }
+
+    /**
+     * the parsed rows of one block, up to the first unparsable one
+     */
+    private static final class Block {
+
+        final int rows;
+        final String parseError; // of the row after the parsed ones, null if all rows parsed
+        final String[] ids;
+        final String[] logins;
+        int[][] idRows;
+        int[][] loginRows;
+        int ownedLoginRow;
+        List<Employee> employees;
+
+        Block(int rows, String parseError) {
+            this.rows = rows;
+            this.parseError = parseError;
+            this.ids = new String[rows];
+            this.logins = new String[rows];
+        }
+    }
+
+    private static final class RowError {
+
+        final long row;
+        final int check;
+        final String message;
+
+        RowError(long row, int check, String message) {
+            this.row = row;
+            this.check = check;
+            this.message = message;
+        }
+
+        /**
+         * @return the message without the ids it may name
+         */
+        String reason() {
+            switch (check) {
+                case DUPLICATE_ID: return "Duplicate id";
+                case DUPLICATE_LOGIN: return "Duplicate login";
+                default: return message;
+            }
+        }
+
+        /**
+         * @return the error a sequential pass meets first, either may be {@literal null}
+         */
+        static RowError first(RowError a, RowError b) {
+            if (null == a || null == b) {
+                return null == a ? b : a;
+            }
+            return a.row < b.row || (a.row == b.row && a.check <= b.check) ? a : b;
+        }
+    }
+}
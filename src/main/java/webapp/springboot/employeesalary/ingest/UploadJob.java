@@ -0,0 +1,124 @@
+package webapp.springboot.employeesalary.ingest;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * State and progress of an asynchronous csv upload, see {@link UploadJobService}.
+ * Only the thread running the job changes it, any thread may read it.
+ */
+public class UploadJob implements IngestProgress {
+
+    public enum Status { QUEUED, VALIDATING, WRITING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final Instant submittedAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant writingStartedAt;
+    private volatile Instant finishedAt;
+    private volatile long rowsParsed;
+    private volatile long rowsValidated;
+    private volatile long rowsWritten;
+    private volatile String error;
+
+    UploadJob(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public void parsed(int rows) {
+        rowsParsed += rows;
+    }
+
+    @Override
+    public void validated(int rows) {
+        rowsValidated += rows;
+    }
+
+    @Override
+    public void written(int rows) {
+        rowsWritten += rows;
+    }
+
+    void validating() {
+        startedAt = Instant.now();
+        status = Status.VALIDATING;
+    }
+
+    void writing() {
+        writingStartedAt = Instant.now();
+        status = Status.WRITING;
+    }
+
+    void succeeded() {
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    /**
+     * @param error the reason, meant to be returned as is to the client
+     */
+    void failed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return null != finishedAt;
+    }
+
+    public Instant getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public long getRowsValidated() {
+        return rowsValidated;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return the reason the job failed, {@literal null} unless it failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return rows validated per second while validating, rows written per
+     * second once writing has started, 0 before the job has started
+     */
+    public double getRowsPerSecond() {
+        Instant from = null == writingStartedAt ? startedAt : writingStartedAt;
+        if (null == from) {
+            return 0;
+        }
+        long rows = null == writingStartedAt ? rowsValidated : rowsWritten;
+        long millis = Duration.between(from, null == finishedAt ? Instant.now() : finishedAt).toMillis();
+        return millis == 0 ? 0 : rows * 1000.0 / millis;
+    }
+}
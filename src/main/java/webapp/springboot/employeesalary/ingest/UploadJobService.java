@@ -0,0 +1,206 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs csv uploads in the background, so that large files do not hold a
+ * request thread for the whole ingest.
+ * <p>
+ * A submitted file is copied to a temporary file and queued for one of
+ * {@code employees.upload.jobs.threads} threads, at most
+ * {@code employees.upload.jobs.queue-capacity} jobs wait. The job validates the
+ * whole file first, so like a synchronous upload nothing is written unless
+ * the whole file is valid. It then writes the file in a second pass, a chunk
+ * per transaction, so readers see the rows as they are written. If a
+ * concurrent write takes a login of the file meanwhile, the job fails with
+ * the first {@link UploadJob#getRowsWritten()} rows written; the file can be
+ * submitted again, its rows are inserted or updated. Finished jobs can be
+ * looked up for {@code employees.upload.jobs.retention-minutes}.
+ * <p>
+ * Files already on the server can be imported from the directory
+ * {@code employees.import.directory} instead, if it is set. They are neither
+ * uploaded nor copied, but read through memory mapped regions in both passes.
+ * <p>
+ * The time of every job is recorded in the timer {@code employees.upload.jobs},
+ * by outcome, and the thread pool in the {@code executor.*} meters of
+ * {@code upload.jobs}.
+ */
+@Service
+public class UploadJobService implements InitializingBean, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadJobService.class);
+
+    @Autowired
+    private EmployeeCsvIngestService ingestService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Path importDirectory; // null if imports are disabled
+    private final Map<String,UploadJob> jobs = new ConcurrentHashMap<>();
+
+    public UploadJobService(@Value("${employees.upload.jobs.threads:2}") int threads,
+                            @Value("${employees.upload.jobs.queue-capacity:8}") int queueCapacity,
+                            @Value("${employees.upload.jobs.retention-minutes:60}") long retentionMinutes,
+                            @Value("${employees.import.directory:}") String importDirectory) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> new Thread(task, "upload-job-" + threadNumber.incrementAndGet()));
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.importDirectory = importDirectory.isEmpty() ? null : Paths.get(importDirectory);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        new ExecutorServiceMetrics(executor, "upload.jobs", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    /**
+     * @param csv the csv content, starting with a header line
+     * @return the queued job
+     * @throws IOException if the content can not be read or stored
+     * @throws RejectedExecutionException if too many jobs are queued already
+     */
+    public UploadJob submit(InputStream csv) throws IOException, RejectedExecutionException {
+        Path file = Files.createTempFile("employees-upload-", ".csv");
+        try {
+            Files.copy(csv, file, StandardCopyOption.REPLACE_EXISTING);
+            return queue(file, false);
+        }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @param fileName the csv file, relative to the import directory
+     * @return the queued job
+     * @throws NoSuchFileException if imports are disabled or there is no such file in the import directory
+     * @throws IOException if the file can not be accessed
+     * @throws RejectedExecutionException if too many jobs are queued already
+     */
+    public UploadJob submitImport(String fileName) throws IOException, RejectedExecutionException {
+        if (null == importDirectory) {
+            throw new NoSuchFileException(fileName, null, "imports are disabled");
+        }
+        // links and .. must not lead out of the import directory
+        Path directory = importDirectory.toRealPath();
+        Path file = directory.resolve(fileName).toRealPath();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new NoSuchFileException(fileName);
+        }
+        return queue(file, true);
+    }
+
+    private UploadJob queue(Path file, boolean imported) {
+        removeExpiredJobs();
+        UploadJob job = new UploadJob(UUID.randomUUID().toString());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, file, imported));
+        }
+        catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<UploadJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * @param imported whether the file is an imported one, to be read in place and kept
+     */
+    private void run(UploadJob job, Path file, boolean imported) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            job.validating();
+            try (InputStream csv = open(file, imported)) {
+                ingestService.validate(csv, job);
+            }
+            job.writing();
+            try (InputStream csv = open(file, imported)) {
+                ingestService.write(csv, job);
+            }
+            job.succeeded();
+        }
+        catch (InvalidEmployeeDataException e) {
+            job.failed(e.getMessage());
+        }
+        catch (IOException e) {
+            job.failed("Error in parsing input CSV file");
+        }
+        catch (RuntimeException e) {
+            LOG.error("Upload job {} failed", job.getId(), e);
+            job.failed("Error in writing employees");
+        }
+        finally {
+            sample.stop(Timer.builder("employees.upload.jobs").tag("outcome", job.getStatus().name().toLowerCase(Locale.ROOT))
+                    .description("Time to run an upload job, without the time it was queued")
+                    .register(meterRegistry));
+            if (!imported) {
+                deleteTemporaryFile(file);
+            }
+        }
+    }
+
+    private static InputStream open(Path file, boolean imported) throws IOException {
+        return imported ? MappedFileInputStream.open(file) : Files.newInputStream(file);
+    }
+
+    private static void deleteTemporaryFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            LOG.warn("Could not delete {}", file, e);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expired = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(expired));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
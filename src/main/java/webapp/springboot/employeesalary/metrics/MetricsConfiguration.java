@@ -0,0 +1,25 @@
+package webapp.springboot.employeesalary.metrics;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics beyond the ones of Spring Boot Actuator, which already times every
+ * request in {@code http.server.requests} and watches the connection pool in
+ * {@code hikaricp.connections.*}. All of them are scraped from
+ * {@code GET /actuator/prometheus}.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * times the methods annotated with {@link io.micrometer.core.annotation.Timed},
+     * the repository calls in {@code employees.repository} by method
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
@@ -0,0 +1,21 @@
+package webapp.springboot.employeesalary.persistent.changelog;
+
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.io.IOException;
+
+/**
+ * Receives the entries of the {@link EmployeeChangeLog} one at a time, in the
+ * order of their sequence numbers.
+ */
+@FunctionalInterface
+public interface EmployeeChangeHandler {
+
+    /**
+     * @param seq the sequence number of the change
+     * @param op INSERT, UPDATE or DELETE
+     * @param id the employee id
+     * @param after the new values of the employee, {@literal null} if it is deleted
+     */
+    void handle(long seq, String op, String id, Employee after) throws IOException;
+}
@@ -0,0 +1,234 @@
+package webapp.springboot.employeesalary.persistent.changelog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangingEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of every write of an employee in the table
+ * {@code employee_changes}, so that downstream systems can sync the changes
+ * since the last sequence number they have seen instead of the whole table.
+ * <p>
+ * The changes of a transaction are collected from its
+ * {@link EmployeesChangedEvent}s and appended in the same transaction right
+ * before it commits. Appending and committing is serialized, so sequence
+ * numbers are assigned in commit order: once a sequence number is visible,
+ * every change with a smaller one is visible too, and a reader that goes on
+ * from the last number it has seen never misses one. A transaction that
+ * rolls back appends nothing. The changes of a set-wise write too large to
+ * list are appended set-wise, see {@link EmployeesChangingEvent}.
+ */
+@Component
+public class EmployeeChangeLog {
+
+    private static final String APPEND_SQL =
+            "INSERT INTO employee_changes (op, id, login, name, salary, startDate) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String APPEND_SELECTED_SQL =
+            "INSERT INTO employee_changes (op, id, login, name, salary, startDate) ";
+    private static final String READ_SQL =
+            "SELECT seq, op, id, login, name, salary, startDate FROM employee_changes WHERE seq > ? ORDER BY seq";
+    private static final int READ_FETCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${employees.upsert.batch-size:500}")
+    private int batchSize;
+
+    // held from appending until the commit is done and its events are delivered
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    @EventListener
+    public void onEmployeesChanged(EmployeesChangedEvent event) {
+        List<EmployeeChange> pending = pending();
+        if (null == pending) {
+            append(event.getChanges());
+        }
+        else {
+            pending.addAll(event.getChanges());
+        }
+    }
+
+    /**
+     * Appends the changes of a set-wise write at once, selected by the query
+     * of the event. The append lock is taken right away and held until the
+     * transaction completes, so the sequence numbers still follow the commit
+     * order. The changes of the transaction before are appended first.
+     */
+    @EventListener
+    public void onEmployeesChanging(EmployeesChangingEvent event) {
+        List<EmployeeChange> pending = pending();
+        if (null != pending) {
+            appendLock.lock();
+            append(pending);
+            pending.clear();
+        }
+        jdbc.update(APPEND_SELECTED_SQL + event.getChangesQuery(), event.getParameters());
+    }
+
+    /**
+     * @return the changes of the current transaction not appended yet,
+     * {@literal null} outside of a transaction
+     */
+    private List<EmployeeChange> pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        List<EmployeeChange> pending = (List<EmployeeChange>) TransactionSynchronizationManager.getResource(this);
+        if (null == pending) {
+            pending = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new AppendBeforeCommit(pending));
+        }
+        return pending;
+    }
+
+    /**
+     * Streams the changes after the given sequence number in the order of
+     * their sequence numbers. An {@link IOException} thrown by the handler is
+     * rethrown wrapped in an {@link UncheckedIOException}
+     *
+     * @param since the last sequence number seen, 0 for all changes
+     * @param limit the changes to read at most, 0 for all of them
+     * @param handler receives every change
+     */
+    @Transactional(readOnly = true)
+    public void read(long since, int limit, EmployeeChangeHandler handler) {
+        jdbc.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(limit > 0 ? READ_SQL + " LIMIT ?" : READ_SQL);
+            statement.setFetchSize(READ_FETCH_SIZE);
+            statement.setLong(1, since);
+            if (limit > 0) {
+                statement.setInt(2, limit);
+            }
+            return statement;
+        }, row -> {
+            String op = row.getString("op");
+            String id = row.getString("id");
+            Employee after = "DELETE".equals(op) ? null : new Employee(id, row.getString("login"),
+                    row.getString("name"), row.getFloat("salary"), row.getObject("startDate", LocalDate.class));
+            try {
+                handler.handle(row.getLong("seq"), op, id, after);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Runs the action while no transaction that changes employees commits.
+     * It sees every change committed before, and no {@link EmployeesChangedEvent}
+     * is delivered after commit until it is done, so that a
+     * {@link webapp.springboot.employeesalary.persistent.repository.EmployeeReadModel}
+     * can be loaded while the employees are written.
+     *
+     * @param action runs on the calling thread
+     */
+    public void betweenCommits(Runnable action) {
+        appendLock.lock();
+        try {
+            action.run();
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void append(List<EmployeeChange> changes) {
+        for (int from = 0; from < changes.size(); from += batchSize) {
+            jdbc.batchUpdate(APPEND_SQL, changes.subList(from, Math.min(from + batchSize, changes.size())),
+                    batchSize, (statement, change) -> {
+                Employee after = change.getAfter();
+                statement.setString(1, null == after ? "DELETE" : null == change.getBefore() ? "INSERT" : "UPDATE");
+                statement.setString(2, change.getId());
+                if (null == after) {
+                    statement.setNull(3, Types.VARCHAR);
+                    statement.setNull(4, Types.VARCHAR);
+                    statement.setNull(5, Types.REAL);
+                    statement.setNull(6, Types.DATE);
+                }
+                else {
+                    statement.setString(3, after.getLogin());
+                    statement.setString(4, after.getName());
+                    statement.setFloat(5, after.getSalary());
+                    statement.setDate(6, Date.valueOf(after.getStartDate()));
+                }
+            });
+        }
+    }
+
+    private class AppendBeforeCommit implements TransactionSynchronization {
+
+        private final List<EmployeeChange> pending;
+
+        AppendBeforeCommit(List<EmployeeChange> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            appendLock.lock();
+            // registered after the after commit listeners of every event of the
+            // transaction, so that it runs once they are done
+            TransactionSynchronizationManager.registerSynchronization(new UnlockAfterCompletion());
+            append(pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(EmployeeChangeLog.this);
+            if (status != STATUS_COMMITTED) {
+                // rolled back, maybe before committing after a set-wise write took the lock
+                unlockAll();
+            }
+        }
+    }
+
+    /**
+     * Releases the append lock last: synchronizations of the same order run in
+     * the order they are registered, and this one is registered at commit.
+     */
+    private class UnlockAfterCompletion implements TransactionSynchronization {
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            unlockAll();
+        }
+    }
+
+    /**
+     * releases the append lock as often as the current thread took it
+     */
+    private void unlockAll() {
+        while (appendLock.isHeldByCurrentThread()) {
+            appendLock.unlock();
+        }
+    }
+}
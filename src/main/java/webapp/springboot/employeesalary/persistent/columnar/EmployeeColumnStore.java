@@ -0,0 +1,529 @@
+package webapp.springboot.employeesalary.persistent.columnar;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeReadModel;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read model of the employees table in columns, enabled with
+ * {@code employees.columnar.enabled=true}. Salaries are a float array and
+ * start dates an int array of epoch days, so range filters and aggregates are
+ * plain array scans. Ids, logins and names are dictionary encoded outside the
+ * heap, see {@link StringDictionary}.
+ * <p>
+ * Like {@link webapp.springboot.employeesalary.analytics.SalaryStatistics} it
+ * is loaded from the database at startup, see {@link EmployeeReadModel}, and
+ * then kept in sync with every committed write through the
+ * {@link EmployeesChangedEvent}. The
+ * {@link webapp.springboot.employeesalary.persistent.repository.EmployeesRepositoryImpl}
+ * answers its list and statistics queries from it in read only transactions.
+ * Results are copied out under a read lock, so slow readers never hold up writes.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "employees.columnar.enabled", havingValue = "true")
+public class EmployeeColumnStore implements InitializingBean, EmployeeReadModel {
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${employees.warm-up.background:false}")
+    private boolean loadInBackground;
+
+    private volatile boolean loaded;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int rows;
+    private float[] salaries;
+    private int[] startDays;
+    private int[] idCodes;
+    private int[] loginCodes;
+    private int[] nameCodes;
+    private int[] rowOfId; // by id code
+    private StringDictionary ids;
+    private StringDictionary logins;
+    private StringDictionary names;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!loadInBackground) {
+            rebuild();
+        }
+    }
+
+    /**
+     * reloads all employees from the database, reads wait until it is done
+     */
+    @Override
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            rows = 0;
+            salaries = new float[1024];
+            startDays = new int[1024];
+            idCodes = new int[1024];
+            loginCodes = new int[1024];
+            nameCodes = new int[1024];
+            rowOfId = new int[1024];
+            ids = new StringDictionary();
+            logins = new StringDictionary();
+            names = new StringDictionary();
+            jdbc.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, login, name, salary, startDate FROM employees");
+                statement.setFetchSize(LOAD_FETCH_SIZE);
+                return statement;
+            }, row -> {
+                append(row.getString("id"), row.getString("login"), row.getString("name"),
+                        row.getFloat("salary"), row.getObject("startDate", LocalDate.class));
+            });
+            loaded = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public void onEmployeesChanged(EmployeesChangedEvent event) {
+        if (!loaded) {
+            return; // loading sees the write
+        }
+        else if (!event.isListed()) {
+            rebuild();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            event.getChanges().forEach(this::apply);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the dictionaries outside the heap
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return ids.offHeapBytes() + logins.offHeapBytes() + names.offHeapBytes();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link webapp.springboot.employeesalary.persistent.repository.EmployeesRepositoryCustom#fetchEmployee}.
+     * Without sortBy the employees are in no particular order.
+     */
+    public List<Employee> fetchEmployee(float minSalary, float maxSalary, int limit, int offset, String sortBy,
+                                        boolean ascendingOrder) {
+        lock.readLock().lock();
+        try {
+            int[] selected = new int[rows];
+            int count = select(minSalary, maxSalary, selected);
+            int from = limit > 0 ? Math.min(offset, count) : 0;
+            int to = limit > 0 ? (int) Math.min((long) offset + limit, count) : count;
+            if (null != sortBy && !"".equals(sortBy)) {
+                selected = first(selected, count, order(sortBy, ascendingOrder), to);
+            }
+            return employees(selected, from, to);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Like {@link webapp.springboot.employeesalary.persistent.repository.EmployeesRepositoryCustom#fetchEmployeeAfter}.
+     */
+    public List<Employee> fetchEmployeeAfter(float minSalary, float maxSalary, int limit, String sortBy,
+                                             boolean ascendingOrder, Object lastSortValue, String lastId) {
+        String column = null == sortBy ? "" : sortBy;
+        lock.readLock().lock();
+        try {
+            int[] selected = new int[rows];
+            int count = select(minSalary, maxSalary, selected);
+            if (null != lastId) {
+                byte[] last = lastId.getBytes(StandardCharsets.UTF_8);
+                byte[] lastName = "name".equals(column) ? ((String) lastSortValue).getBytes(StandardCharsets.UTF_8) : null;
+                int after = 0;
+                for (int i = 0; i < count; i++) {
+                    int c = compareToLast(selected[i], column, lastSortValue, lastName, last);
+                    if (ascendingOrder ? c > 0 : c < 0) {
+                        selected[after++] = selected[i];
+                    }
+                }
+                count = after;
+            }
+            int to = Math.min(limit, count);
+            return employees(first(selected, count, order(column, ascendingOrder), to), 0, to);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SalarySummary summarizeSalaries(float minSalary, float maxSalary) {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            double sum = 0;
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int row = 0; row < rows; row++) {
+                float salary = salaries[row];
+                if (salary >= minSalary && salary < maxSalary) {
+                    count++;
+                    sum += salary;
+                    min = Math.min(min, salary);
+                    max = Math.max(max, salary);
+                }
+            }
+            return new SalarySummary(count, sum, count == 0 ? null : (double) min, count == 0 ? null : (double) max);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<Integer,SalarySummary> summarizeSalariesByStartYear(float minSalary, float maxSalary) {
+        lock.readLock().lock();
+        try {
+            int[] selected = new int[rows];
+            int count = select(minSalary, maxSalary, selected);
+            int[] years = new int[count];
+            int minYear = Integer.MAX_VALUE;
+            int maxYear = Integer.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                years[i] = LocalDate.ofEpochDay(startDays[selected[i]]).getYear();
+                minYear = Math.min(minYear, years[i]);
+                maxYear = Math.max(maxYear, years[i]);
+            }
+            Map<Integer,SalarySummary> summaries = new LinkedHashMap<>();
+            if (count == 0) {
+                return summaries;
+            }
+            int span = maxYear - minYear + 1;
+            long[] counts = new long[span];
+            double[] sums = new double[span];
+            float[] mins = new float[span];
+            float[] maxs = new float[span];
+            Arrays.fill(mins, Float.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Float.NEGATIVE_INFINITY);
+            for (int i = 0; i < count; i++) {
+                int y = years[i] - minYear;
+                float salary = salaries[selected[i]];
+                counts[y]++;
+                sums[y] += salary;
+                mins[y] = Math.min(mins[y], salary);
+                maxs[y] = Math.max(maxs[y], salary);
+            }
+            for (int y = 0; y < span; y++) {
+                if (counts[y] > 0) {
+                    summaries.put(minYear + y, new SalarySummary(counts[y], sums[y], (double) mins[y], (double) maxs[y]));
+                }
+            }
+            return summaries;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] salaryHistogram(float minSalary, float maxSalary, double origin, double bucketWidth, int buckets) {
+        lock.readLock().lock();
+        try {
+            long[] counts = new long[buckets];
+            for (int row = 0; row < rows; row++) {
+                float salary = salaries[row];
+                if (salary >= minSalary && salary < maxSalary) {
+                    double bucket = Math.floor((salary - origin) / bucketWidth);
+                    counts[(int) Math.min(Math.max(bucket, 0), buckets - 1)]++;
+                }
+            }
+            return counts;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * continuous percentiles, interpolated linearly between the closest salaries like PERCENTILE_CONT
+     */
+    public Double[] salaryPercentiles(float minSalary, float maxSalary, double... fractions) {
+        float[] sorted;
+        lock.readLock().lock();
+        try {
+            sorted = new float[rows];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                float salary = salaries[row];
+                sorted[count] = salary;
+                count += salary >= minSalary && salary < maxSalary ? 1 : 0;
+            }
+            sorted = Arrays.copyOf(sorted, count);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(sorted);
+        Double[] percentiles = new Double[fractions.length];
+        for (int i = 0; i < fractions.length && sorted.length > 0; i++) {
+            double position = fractions[i] * (sorted.length - 1);
+            int lower = (int) Math.floor(position);
+            int upper = (int) Math.ceil(position);
+            percentiles[i] = sorted[lower] + (position - lower) * ((double) sorted[upper] - sorted[lower]);
+        }
+        return percentiles;
+    }
+
+    /**
+     * @param selected receives the rows with minSalary &lt;= salary &lt; maxSalary
+     * @return the number of selected rows
+     */
+    private int select(float minSalary, float maxSalary, int[] selected) {
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            float salary = salaries[row];
+            // without a branch, so the scan does not depend on how selective the range is
+            selected[count] = row;
+            count += salary >= minSalary && salary < maxSalary ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * the order of the rows by the sort column and then by id, like the
+     * ORDER BY of the database queries
+     */
+    private RowOrder order(String sortBy, boolean ascendingOrder) {
+        RowOrder byId = (a, b) -> ids.compare(idCodes[a], idCodes[b]);
+        RowOrder order;
+        switch (sortBy) {
+            case "salary":
+                order = (a, b) -> {
+                    int c = Float.compare(salaries[a], salaries[b]);
+                    return c != 0 ? c : byId.compare(a, b);
+                };
+                break;
+            case "startDate":
+                order = (a, b) -> {
+                    int c = Integer.compare(startDays[a], startDays[b]);
+                    return c != 0 ? c : byId.compare(a, b);
+                };
+                break;
+            case "name":
+                order = (a, b) -> {
+                    int c = names.compare(nameCodes[a], nameCodes[b]);
+                    return c != 0 ? c : byId.compare(a, b);
+                };
+                break;
+            default:
+                order = byId;
+        }
+        return ascendingOrder ? order : (a, b) -> order.compare(b, a);
+    }
+
+    /**
+     * @return how the row compares to the last row of the previous page in ascending order
+     */
+    private int compareToLast(int row, String sortBy, Object lastSortValue, byte[] lastName, byte[] lastId) {
+        int c;
+        switch (sortBy) {
+            case "salary": c = Float.compare(salaries[row], (Float) lastSortValue); break;
+            case "startDate": c = Long.compare(startDays[row], ((LocalDate) lastSortValue).toEpochDay()); break;
+            case "name": c = names.compare(nameCodes[row], lastName); break;
+            default: c = 0;
+        }
+        return c != 0 ? c : ids.compare(idCodes[row], lastId);
+    }
+
+    /**
+     * @return the first k of the count rows in sorted order, found with a heap of k rows
+     */
+    private static int[] first(int[] rows, int count, RowOrder order, int k) {
+        if (k >= count) {
+            int[] sorted = Arrays.copyOf(rows, count);
+            sort(sorted, order);
+            return sorted;
+        }
+        // max heap of the k first rows seen so far
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (size < k) {
+                int child = size++;
+                while (child > 0 && order.compare(heap[(child - 1) / 2], row) < 0) {
+                    heap[child] = heap[(child - 1) / 2];
+                    child = (child - 1) / 2;
+                }
+                heap[child] = row;
+            }
+            else if (k > 0 && order.compare(row, heap[0]) < 0) {
+                int parent = 0;
+                while (2 * parent + 1 < k) {
+                    int child = 2 * parent + 1;
+                    if (child + 1 < k && order.compare(heap[child], heap[child + 1]) < 0) {
+                        child++;
+                    }
+                    if (order.compare(heap[child], row) <= 0) {
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = row;
+            }
+        }
+        sort(heap, order);
+        return heap;
+    }
+
+    /**
+     * merge sort of row numbers
+     */
+    private static void sort(int[] rows, RowOrder order) {
+        int[] from = rows;
+        int[] to = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                int middle = Math.min(start + width, rows.length);
+                int end = Math.min(start + 2 * width, rows.length);
+                int i = start;
+                int j = middle;
+                for (int k = start; k < end; k++) {
+                    to[k] = j >= end || (i < middle && order.compare(from[i], from[j]) <= 0) ? from[i++] : from[j++];
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != rows) {
+            System.arraycopy(from, 0, rows, 0, rows.length);
+        }
+    }
+
+    private List<Employee> employees(int[] selected, int from, int to) {
+        List<Employee> employees = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            int row = selected[i];
+            employees.add(new Employee(ids.get(idCodes[row]), logins.get(loginCodes[row]), names.get(nameCodes[row]),
+                    salaries[row], LocalDate.ofEpochDay(startDays[row])));
+        }
+        return employees;
+    }
+
+    private void apply(EmployeeChange change) {
+        int idCode = ids.find(change.getId());
+        int row = idCode < 0 ? -1 : rowOfId[idCode];
+        Employee after = change.getAfter();
+        if (null == after) {
+            if (row >= 0) {
+                remove(row);
+            }
+        }
+        else if (row >= 0) {
+            // the new strings are added before the old ones are released, unchanged ones stay where they are
+            int login = logins.add(after.getLogin());
+            int name = names.add(after.getName());
+            logins.release(loginCodes[row]);
+            names.release(nameCodes[row]);
+            loginCodes[row] = login;
+            nameCodes[row] = name;
+            salaries[row] = after.getSalary();
+            startDays[row] = (int) after.getStartDate().toEpochDay();
+        }
+        else {
+            append(after.getId(), after.getLogin(), after.getName(), after.getSalary(), after.getStartDate());
+        }
+    }
+
+    private void append(String id, String login, String name, float salary, LocalDate startDate) {
+        if (rows == salaries.length) {
+            int capacity = rows * 2;
+            salaries = Arrays.copyOf(salaries, capacity);
+            startDays = Arrays.copyOf(startDays, capacity);
+            idCodes = Arrays.copyOf(idCodes, capacity);
+            loginCodes = Arrays.copyOf(loginCodes, capacity);
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+        }
+        int idCode = ids.add(id);
+        if (idCode >= rowOfId.length) {
+            rowOfId = Arrays.copyOf(rowOfId, Math.max(rowOfId.length * 2, idCode + 1));
+        }
+        rowOfId[idCode] = rows;
+        idCodes[rows] = idCode;
+        loginCodes[rows] = logins.add(login);
+        nameCodes[rows] = names.add(name);
+        salaries[rows] = salary;
+        startDays[rows] = (int) startDate.toEpochDay();
+        rows++;
+    }
+
+    /**
+     * removes the row by moving the last row into its place
+     */
+    private void remove(int row) {
+        ids.release(idCodes[row]);
+        logins.release(loginCodes[row]);
+        names.release(nameCodes[row]);
+        int last = --rows;
+        salaries[row] = salaries[last];
+        startDays[row] = startDays[last];
+        idCodes[row] = idCodes[last];
+        loginCodes[row] = loginCodes[last];
+        nameCodes[row] = nameCodes[last];
+        rowOfId[idCodes[row]] = row;
+    }
+
+    @FunctionalInterface
+    private interface RowOrder {
+
+        int compare(int row, int other);
+    }
+}
@@ -0,0 +1,212 @@
+package webapp.springboot.employeesalary.persistent.columnar;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding of a string column. Every distinct string is stored
+ * once, as UTF-8 in a direct buffer outside the heap, and rows refer to it
+ * by an int code. Codes are reference counted: a code that is no longer
+ * used is reused, and the space of unused strings is reclaimed once it
+ * makes up half of the buffer.
+ * <p>
+ * Not thread safe, {@link EmployeeColumnStore} guards it.
+ */
+final class StringDictionary {
+
+    private static final int INITIAL_CODES = 1024;
+
+    private ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+    private int end; // bytes in use, including unused strings
+    private int unusedBytes;
+
+    private int[] offsets = new int[INITIAL_CODES];
+    private int[] lengths = new int[INITIAL_CODES];
+    private int[] hashes = new int[INITIAL_CODES];
+    private int[] references = new int[INITIAL_CODES];
+    private int[] nextInBucket = new int[INITIAL_CODES]; // code + 1 of the next string in the bucket, 0 at the end
+    private int[] buckets = new int[INITIAL_CODES]; // code + 1 of the first string in the bucket, 0 if empty
+    private int codes; // codes ever assigned
+    private int[] freeCodes = new int[16];
+    private int free;
+
+    /**
+     * @return the code of the string, with one more reference
+     */
+    int add(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8);
+        int code = find(utf8, hash);
+        if (code >= 0) {
+            references[code]++;
+            return code;
+        }
+        code = free > 0 ? freeCodes[--free] : newCode();
+        offsets[code] = append(utf8);
+        lengths[code] = utf8.length;
+        hashes[code] = hash;
+        references[code] = 1;
+        int bucket = hash & (buckets.length - 1);
+        nextInBucket[code] = buckets[bucket];
+        buckets[bucket] = code + 1;
+        return code;
+    }
+
+    /**
+     * drops one reference of the code, the string is removed with the last one
+     */
+    void release(int code) {
+        if (--references[code] > 0) {
+            return;
+        }
+        int bucket = hashes[code] & (buckets.length - 1);
+        if (buckets[bucket] == code + 1) {
+            buckets[bucket] = nextInBucket[code];
+        }
+        else {
+            int previous = buckets[bucket] - 1;
+            while (nextInBucket[previous] != code + 1) {
+                previous = nextInBucket[previous] - 1;
+            }
+            nextInBucket[previous] = nextInBucket[code];
+        }
+        unusedBytes += lengths[code];
+        if (free == freeCodes.length) {
+            freeCodes = Arrays.copyOf(freeCodes, free * 2);
+        }
+        freeCodes[free++] = code;
+    }
+
+    /**
+     * @return the code of the string, -1 if it is not in the dictionary
+     */
+    int find(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        return find(utf8, hash(utf8));
+    }
+
+    String get(int code) {
+        byte[] utf8 = new byte[lengths[code]];
+        ByteBuffer view = bytes.duplicate();
+        view.position(offsets[code]);
+        view.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two strings by their UTF-8 bytes, which is the order of their
+     * code points. It only differs from {@link String#compareTo} for
+     * characters outside the Basic Multilingual Plane.
+     */
+    int compare(int code, int other) {
+        if (code == other) {
+            return 0;
+        }
+        int offset = offsets[code];
+        int otherOffset = offsets[other];
+        int length = Math.min(lengths[code], lengths[other]);
+        for (int i = 0; i < length; i++) {
+            int c = Integer.compare(bytes.get(offset + i) & 0xff, bytes.get(otherOffset + i) & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(lengths[code], lengths[other]);
+    }
+
+    /**
+     * like {@link #compare(int, int)}, with the UTF-8 bytes of a string that need not be in the dictionary
+     */
+    int compare(int code, byte[] utf8) {
+        int offset = offsets[code];
+        int length = Math.min(lengths[code], utf8.length);
+        for (int i = 0; i < length; i++) {
+            int c = Integer.compare(bytes.get(offset + i) & 0xff, utf8[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(lengths[code], utf8.length);
+    }
+
+    /**
+     * @return the bytes of the buffer outside the heap
+     */
+    long offHeapBytes() {
+        return bytes.capacity();
+    }
+
+    private int find(byte[] utf8, int hash) {
+        for (int next = buckets[hash & (buckets.length - 1)]; next != 0; next = nextInBucket[next - 1]) {
+            int code = next - 1;
+            if (hashes[code] == hash && compare(code, utf8) == 0) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private int newCode() {
+        if (codes == offsets.length) {
+            int capacity = codes * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            references = Arrays.copyOf(references, capacity);
+            nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+            rehash(capacity);
+        }
+        return codes++;
+    }
+
+    private void rehash(int bucketCount) {
+        buckets = new int[bucketCount];
+        for (int code = 0; code < codes; code++) {
+            if (references[code] > 0) {
+                int bucket = hashes[code] & (bucketCount - 1);
+                nextInBucket[code] = buckets[bucket];
+                buckets[bucket] = code + 1;
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the appended bytes
+     */
+    private int append(byte[] utf8) {
+        if (bytes.capacity() - end < utf8.length) {
+            // unused strings are dropped when they take half of the buffer, otherwise it grows
+            int used = end - unusedBytes;
+            int capacity = unusedBytes >= end / 2 ? bytes.capacity() : bytes.capacity() * 2;
+            while (capacity - used < utf8.length) {
+                capacity *= 2;
+            }
+            compact(capacity);
+        }
+        bytes.position(end);
+        bytes.put(utf8);
+        end += utf8.length;
+        return end - utf8.length;
+    }
+
+    private void compact(int capacity) {
+        ByteBuffer compacted = ByteBuffer.allocateDirect(capacity);
+        for (int code = 0; code < codes; code++) {
+            if (references[code] > 0) {
+                ByteBuffer view = bytes.duplicate();
+                view.position(offsets[code]).limit(offsets[code] + lengths[code]);
+                offsets[code] = compacted.position();
+                compacted.put(view);
+            }
+        }
+        bytes = compacted;
+        end = compacted.position();
+        unusedBytes = 0;
+    }
+
+    private static int hash(byte[] utf8) {
+        int h = Arrays.hashCode(utf8);
+        return h ^ (h >>> 16);
+    }
+}
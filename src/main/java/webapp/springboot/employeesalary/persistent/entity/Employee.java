@@ -1,14 +1,13 @@
 package webapp.springboot.employeesalary.persistent.entity;
 
 import javax.persistence.*;
-import java.io.UnsupportedEncodingException;
 import java.time.LocalDate;
 
 /**
  * Employee class contains the details a single row
  * in employees table in the database.
- * The "employees" table is created by executing the
- * "employees_db.sql" script in /src/main/resources
+ * The "employees" table is created by the versioned schema
+ * migrations in /src/main/resources/db/migration
  */
 @Entity
 @Table(name = "employees")
@@ -35,7 +34,7 @@ public class Employee {
     public Employee(String id, String login, String name, float salary, LocalDate startDate) {
         this.id = id;
         this.login = login;
-        this.name = inUTF8String(name);
+        this.name = name;
         this.salary = salary;
         this.startDate = startDate;
     }
@@ -61,7 +60,7 @@ public class Employee {
     }
 
     public void setName(String name) {
-        this.name = inUTF8String(name);
+        this.name = name;
     }
 
     public float getSalary() {
@@ -79,17 +78,4 @@ public class Employee {
     public void setStartDate(LocalDate startDate) {
         this.startDate = startDate;
     }
-
-    /**
-     * encodes a string in UTF-8
-     *
-     * @param s input string
-     * @return the UTF-8 encoded string
-     */
-    private String inUTF8String(String s) {
-        try {
-            return new String(s.getBytes("ISO-8859-1"),"UTF-8");
-        } catch (UnsupportedEncodingException e) {}
-        return s;
-    }
 }
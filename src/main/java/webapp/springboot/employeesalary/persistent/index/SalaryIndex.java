@@ -0,0 +1,169 @@
+package webapp.springboot.employeesalary.persistent.index;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeReadModel;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * All employees in memory, sorted by (salary, id), enabled with
+ * {@code employees.salary-index.enabled=true}. A salary range is found by a
+ * binary search for its first employee and then read by walking the skip
+ * list, so a page sorted by salary costs its offset plus its limit, whatever
+ * the number of employees.
+ * <p>
+ * Like {@link webapp.springboot.employeesalary.analytics.SalaryStatistics} it
+ * is loaded from the database at startup, see {@link EmployeeReadModel}, and
+ * then kept in sync with every committed write through the
+ * {@link EmployeesChangedEvent}. Reads take no lock: while an employee is
+ * changed, a concurrent read may see its old or its new salary, both or
+ * neither.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "employees.salary-index.enabled", havingValue = "true")
+public class SalaryIndex implements InitializingBean, EmployeeReadModel {
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    // the entries are copies that are never modified, with ids that are never empty
+    private static final Comparator<Employee> SALARY_ORDER = (a, b) -> {
+        int c = Float.compare(a.getSalary(), b.getSalary());
+        return c != 0 ? c : a.getId().compareTo(b.getId());
+    };
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${employees.warm-up.background:false}")
+    private boolean loadInBackground;
+
+    private volatile boolean loaded;
+
+    private volatile ConcurrentSkipListSet<Employee> employees = new ConcurrentSkipListSet<>(SALARY_ORDER);
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!loadInBackground) {
+            rebuild();
+        }
+    }
+
+    /**
+     * reloads all employees from the database, reads see the old index until it is done
+     */
+    @Override
+    public void rebuild() {
+        ConcurrentSkipListSet<Employee> rebuilt = new ConcurrentSkipListSet<>(SALARY_ORDER);
+        jdbc.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, login, name, salary, startDate FROM employees");
+            statement.setFetchSize(LOAD_FETCH_SIZE);
+            return statement;
+        }, row -> {
+            rebuilt.add(new Employee(row.getString("id"), row.getString("login"), row.getString("name"),
+                    row.getFloat("salary"), row.getObject("startDate", LocalDate.class)));
+        });
+        employees = rebuilt;
+        loaded = true;
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @TransactionalEventListener
+    public synchronized void onEmployeesChanged(EmployeesChangedEvent event) {
+        if (!loaded) {
+            return; // loading sees the write
+        }
+        else if (!event.isListed()) {
+            rebuild();
+            return;
+        }
+        for (EmployeeChange change : event.getChanges()) {
+            if (null != change.getBefore()) {
+                employees.remove(key(change.getBefore().getSalary(), change.getId()));
+            }
+            Employee after = change.getAfter();
+            if (null != after) {
+                employees.add(new Employee(after.getId(), after.getLogin(), after.getName(), after.getSalary(),
+                        after.getStartDate()));
+            }
+        }
+    }
+
+    public int size() {
+        return employees.size();
+    }
+
+    /**
+     * The employees with minSalary &lt;= salary &lt; maxSalary in the order of
+     * (salary, id). Like the database, limit and offset only apply if limit is
+     * positive. The employees are shared with the index and must not be modified.
+     */
+    public Stream<Employee> range(float minSalary, float maxSalary, int limit, int offset, boolean ascendingOrder) {
+        Stream<Employee> range = range(minSalary, maxSalary, ascendingOrder).stream();
+        return limit > 0 ? range.skip(Math.max(offset, 0)).limit(limit) : range;
+    }
+
+    /**
+     * Like {@link webapp.springboot.employeesalary.persistent.repository.EmployeesRepositoryCustom#fetchEmployee}
+     * sorted by salary, with ties in the order of their ids.
+     */
+    public List<Employee> fetchEmployee(float minSalary, float maxSalary, int limit, int offset,
+                                        boolean ascendingOrder) {
+        return range(minSalary, maxSalary, limit, offset, ascendingOrder).map(SalaryIndex::copy)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Like {@link webapp.springboot.employeesalary.persistent.repository.EmployeesRepositoryCustom#fetchEmployeeAfter}
+     * sorted by salary.
+     */
+    public List<Employee> fetchEmployeeAfter(float minSalary, float maxSalary, int limit, boolean ascendingOrder,
+                                             Float lastSalary, String lastId) {
+        NavigableSet<Employee> range = range(minSalary, maxSalary, ascendingOrder);
+        if (null != lastId) {
+            // the descending view is ordered the other way round, so tailSet is after the last one in both
+            range = range.tailSet(key(lastSalary, lastId), false);
+        }
+        return range.stream().limit(limit).map(SalaryIndex::copy).collect(Collectors.toList());
+    }
+
+    private NavigableSet<Employee> range(float minSalary, float maxSalary, boolean ascendingOrder) {
+        ConcurrentSkipListSet<Employee> employees = this.employees;
+        if (!(minSalary < maxSalary)) {
+            return employees.subSet(key(0, ""), true, key(0, ""), false);
+        }
+        // the empty id sorts before every employee of the same salary
+        NavigableSet<Employee> range = employees.subSet(key(minSalary, ""), true, key(maxSalary, ""), false);
+        return ascendingOrder ? range : range.descendingSet();
+    }
+
+    private static Employee key(float salary, String id) {
+        return new Employee(id, null, null, salary, null);
+    }
+
+    private static Employee copy(Employee e) {
+        return new Employee(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+    }
+}
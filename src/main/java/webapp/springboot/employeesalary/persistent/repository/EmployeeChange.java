@@ -0,0 +1,33 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+/**
+ * The values of one employee before and after a write. Before is
+ * {@literal null} for an insert, after is {@literal null} for a delete.
+ */
+public class EmployeeChange {
+
+    private final Employee before;
+    private final Employee after;
+
+    public EmployeeChange(Employee before, Employee after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public Employee getBefore() {
+        return before;
+    }
+
+    public Employee getAfter() {
+        return after;
+    }
+
+    /**
+     * @return id of the changed employee
+     */
+    public String getId() {
+        return null == after ? before.getId() : after.getId();
+    }
+}
@@ -0,0 +1,26 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+/**
+ * A copy of the employees table kept in memory, loaded from the database and
+ * then kept in sync through the {@link EmployeesChangedEvent}. It is loaded
+ * at startup, or with {@code employees.warm-up.background=true} in the
+ * background once the application is ready, see
+ * {@link webapp.springboot.employeesalary.startup.BackgroundWarmUp}. Until it
+ * is loaded it must not be read, and it ignores the writes, which the load sees.
+ * A write that does not list its changes reloads it.
+ * <p>
+ * Read models are never initialized lazily: created by the first write
+ * delivered to them, they would load that write and then apply it again.
+ */
+public interface EmployeeReadModel {
+
+    /**
+     * reloads all employees from the database
+     */
+    void rebuild();
+
+    /**
+     * @return whether it has been loaded at least once
+     */
+    boolean isLoaded();
+}
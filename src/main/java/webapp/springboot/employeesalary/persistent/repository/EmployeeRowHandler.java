@@ -0,0 +1,15 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Receives the rows of a streamed employees query one at a time, straight
+ * from the result set, without building {@link webapp.springboot.employeesalary.persistent.entity.Employee}
+ * entities.
+ */
+@FunctionalInterface
+public interface EmployeeRowHandler {
+
+    void handle(String id, String login, String name, float salary, LocalDate startDate) throws IOException;
+}
@@ -0,0 +1,53 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Published by {@link EmployeesRepositoryImpl} for every write to the employees
+ * table. Listeners that keep derived state (caches, statistics) should use
+ * {@link org.springframework.transaction.event.TransactionalEventListener} so
+ * that they only see committed changes.
+ * <p>
+ * A set-wise write of too many employees does not list its changes, see
+ * {@link EmployeesChangingEvent}, listeners reload their state instead.
+ */
+public class EmployeesChangedEvent {
+
+    private final List<EmployeeChange> changes;
+    private final boolean listed;
+
+    public EmployeesChangedEvent(List<EmployeeChange> changes) {
+        this(changes, true);
+    }
+
+    public EmployeesChangedEvent(EmployeeChange change) {
+        this(Collections.singletonList(change));
+    }
+
+    private EmployeesChangedEvent(List<EmployeeChange> changes, boolean listed) {
+        this.changes = Collections.unmodifiableList(changes);
+        this.listed = listed;
+    }
+
+    /**
+     * @return the event of a write whose changes are not listed
+     */
+    public static EmployeesChangedEvent unlisted() {
+        return new EmployeesChangedEvent(Collections.emptyList(), false);
+    }
+
+    /**
+     * @return the changes, empty unless they are listed
+     */
+    public List<EmployeeChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return whether the changes are listed, {@literal false} if any employee may have changed
+     */
+    public boolean isListed() {
+        return listed;
+    }
+}
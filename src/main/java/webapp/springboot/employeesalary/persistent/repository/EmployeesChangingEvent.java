@@ -0,0 +1,32 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+/**
+ * Published by {@link EmployeesRepositoryImpl} right before a set-wise write
+ * of more employees than {@code employees.bulk.max-listed-changes}, in the
+ * same transaction. Instead of the changes it carries a query over the
+ * employees table that selects them as they are about to be made, with the
+ * columns op, id, login, name, salary and startDate of the change log, so
+ * that they can be recorded set-wise as well. The {@link EmployeesChangedEvent}
+ * after the write does not list them then.
+ */
+public class EmployeesChangingEvent {
+
+    private final String changesQuery;
+    private final Object[] parameters;
+
+    public EmployeesChangingEvent(String changesQuery, Object... parameters) {
+        this.changesQuery = changesQuery;
+        this.parameters = parameters;
+    }
+
+    public String getChangesQuery() {
+        return changesQuery;
+    }
+
+    /**
+     * @return the values of the positional parameters of the query
+     */
+    public Object[] getParameters() {
+        return parameters.clone();
+    }
+}
@@ -1,22 +1,82 @@
 package webapp.springboot.employeesalary.persistent.repository;
 
+import webapp.springboot.employeesalary.analytics.SalarySummary;
 import webapp.springboot.employeesalary.persistent.entity.Employee;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Methods to perform some custom CRUD operations on the employees
- * tables
+ * tables. Writes must go through these methods rather than the inherited
+ * {@link org.springframework.data.repository.CrudRepository} ones, which
+ * publish no {@link EmployeesChangedEvent}.
  */
 public interface EmployeesRepositoryCustom {
 
     /**
-     * updates an employee
+     * inserts a new employee with a single statement, the primary key and
+     * the unique login decide whether it may be written
+     *
+     * @param employee the values of the new employee
+     * @return {@link WriteResult#WRITTEN}, {@link WriteResult#ID_EXISTS} or {@link WriteResult#LOGIN_EXISTS}
+     */
+    WriteResult insertEmployee(Employee employee);
+
+    /**
+     * updates an employee, the unique login decides whether the new login may be written
      *
      * @param employee the new values of the employee
-     * @return {@literal true} if successfully updated, {@;literal false} otherwise
+     * @return {@link WriteResult#WRITTEN}, {@link WriteResult#NO_SUCH_EMPLOYEE} or {@link WriteResult#LOGIN_EXISTS}
+     */
+    WriteResult updateEmployee(Employee employee);
+
+    /**
+     * deletes an employee
+     *
+     * @param id the id of the employee to delete
+     * @return {@literal true} if the employee existed and is deleted, {@literal false} otherwise
+     */
+    boolean deleteEmployee(String id);
+
+    /**
+     * Raises the salaries of the employees with minSalary &lt;= salary &lt; maxSalary
+     * that started before the given date, with a single UPDATE of the whole set.
+     * The new salary is salary * (1 + percent / 100), rounded to a float like
+     * every salary.
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @param startedBefore only employees that started before it, {@literal null} for all
+     * @param percent the raise in percent, &gt; -100
+     * @return number of employees raised
+     * @throws org.springframework.dao.ConcurrencyFailureException if a concurrent write
+     *         moved an employee into the set meanwhile, nothing is raised then
+     */
+    int raiseSalaries(float minSalary, float maxSalary, LocalDate startedBefore, double percent);
+
+    /**
+     * deletes the employees with the given ids with a single DELETE, ids without
+     * an employee are ignored
+     *
+     * @param ids the ids of the employees to delete
+     * @return number of employees deleted
+     * @throws org.springframework.dao.ConcurrencyFailureException if a concurrent write
+     *         inserted an employee with one of the ids meanwhile, nothing is deleted then
+     */
+    int deleteEmployees(Collection<String> ids);
+
+    /**
+     * inserts the employees that do not exist yet and updates the others,
+     * matched by employee id. The rows are sent to the database in JDBC
+     * batches of {@code employees.upsert.batch-size}
+     *
+     * @param employees the new values of the employees
+     * @return number of employees written
      */
-    boolean updateEmployee(Employee employee);
+    int upsertEmployees(List<Employee> employees);
 
     /**
      * Query the employees tables depending the given filters and
@@ -33,6 +93,41 @@ public interface EmployeesRepositoryCustom {
     List<Employee> fetchEmployee(float minSalary, float maxSalary, int limit, int offset,
                                  String sortBy, boolean ascendingOrder);
 
+    /**
+     * Streaming variant of {@link #fetchEmployee}. The rows are read from a
+     * forward-only result set and passed to the handler as they arrive, so
+     * the result is never materialized as a list. An {@link java.io.IOException}
+     * thrown by the handler is rethrown wrapped in an {@link java.io.UncheckedIOException}
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @param limit
+     * @param offset
+     * @param sortBy
+     * @param ascendingOrder
+     * @param handler receives every row
+     */
+    void streamEmployee(float minSalary, float maxSalary, int limit, int offset, String sortBy,
+                        boolean ascendingOrder, EmployeeRowHandler handler);
+
+    /**
+     * Keyset paged variant of {@link #fetchEmployee}. Instead of skipping an
+     * offset it seeks directly past the last employee of the previous page, so
+     * every page costs the same no matter how deep it is. Employees are ordered
+     * by the sort column and then by id to make the order total.
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @param limit page size, must be &gt; 0
+     * @param sortBy sort column or empty to sort by id only
+     * @param ascendingOrder
+     * @param lastSortValue sort column value of the last employee of the previous page
+     * @param lastId id of the last employee of the previous page, {@literal null} for the first page
+     * @return list of employees
+     */
+    List<Employee> fetchEmployeeAfter(float minSalary, float maxSalary, int limit, String sortBy,
+                                      boolean ascendingOrder, Object lastSortValue, String lastId);
+
     /**
      * Checks weather the given employee is exists or not
      *
@@ -42,10 +137,54 @@ public interface EmployeesRepositoryCustom {
     boolean existsByEmployeeId(String eid);
 
     /**
-     * Checks weather the given login already exists or not
+     * Looks up the owners of the given logins with a single query
+     *
+     * @param logins the logins to look up
+     * @return employee id by login, for the logins that already exist
+     */
+    Map<String,String> findIdsByLogins(Collection<String> logins);
+
+    /**
+     * Aggregates the salaries of the employees with minSalary &lt;= salary &lt; maxSalary
+     * in the database, in a single query
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @return count, sum, min, max and mean of the salaries
+     */
+    SalarySummary summarizeSalaries(float minSalary, float maxSalary);
+
+    /**
+     * Like {@link #summarizeSalaries} but grouped by the year of the start date
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @return summary by start year, in ascending year order
+     */
+    Map<Integer,SalarySummary> summarizeSalariesByStartYear(float minSalary, float maxSalary);
+
+    /**
+     * Counts the salaries with minSalary &lt;= salary &lt; maxSalary in equal width
+     * buckets, the first one starting at origin. Salaries beyond the last bucket
+     * are counted in the last bucket.
      *
-     * @param login the login to check
-     * @return {@literal true} if already exists, {@literal false} otherwise
+     * @param minSalary
+     * @param maxSalary
+     * @param origin lower bound of the first bucket
+     * @param bucketWidth width of every bucket, &gt; 0
+     * @param buckets number of buckets, &gt; 0
+     * @return count of every bucket
+     */
+    long[] salaryHistogram(float minSalary, float maxSalary, double origin, double bucketWidth, int buckets);
+
+    /**
+     * Computes continuous percentiles of the salaries with
+     * minSalary &lt;= salary &lt; maxSalary in a single query
+     *
+     * @param minSalary
+     * @param maxSalary
+     * @param fractions the percentiles as fractions in [0, 1]
+     * @return the percentile value for every fraction, {@literal null} if there are no salaries
      */
-    boolean existsByLogin(String login);
+    Double[] salaryPercentiles(float minSalary, float maxSalary, double... fractions);
 }
@@ -1,56 +1,523 @@
 package webapp.springboot.employeesalary.persistent.repository;
 
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.columnar.EmployeeColumnStore;
 import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.index.SalaryIndex;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
-import java.time.format.DateTimeFormatter;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Implementation of {@link EmployeesRepositoryCustom}
+ * Implementation of {@link EmployeesRepositoryCustom}. Every write publishes an
+ * {@link EmployeesChangedEvent} with the old and new values of the employees,
+ * except for set-wise writes of more than {@code employees.bulk.max-listed-changes}
+ * employees, which publish an {@link EmployeesChangingEvent} before instead.
+ * If the {@link EmployeeColumnStore} is enabled, lists and salary statistics
+ * are read from it instead of the database, unless the current transaction
+ * has written employees that are not committed yet. The same holds for lists
+ * sorted by salary and the {@link SalaryIndex}, which takes precedence.
+ * The time of every call is recorded in the timer {@code employees.repository}.
  */
 @Repository
 @Transactional
 public class EmployeesRepositoryImpl implements EmployeesRepositoryCustom {
 
+	// both bind login, name, salary, startDate and id in this order
+	private static final String INSERT_SQL = "INSERT INTO employees (login, name, salary, startDate, id) VALUES (?, ?, ?, ?, ?)";
+	private static final String UPDATE_SQL = "UPDATE employees SET login = ?, name = ?, salary = ?, startDate = ? WHERE id = ?";
+	private static final String UPSERT_SQL = "MERGE INTO employees (id, login, name, salary, startDate) KEY(id) VALUES (?, ?, ?, ?, ?)";
+
+	private static final String TIMER = "employees.repository"; // tagged with the method
+
+	private static final String UNIQUE_VIOLATION = "23505"; // SQLSTATE
+
+	private static final int STREAM_FETCH_SIZE = 1000;
+
+	// every list statement is built once, so that the database sees the same text for every page
+	private static final String[] SORT_COLUMNS = {"", "name", "salary", "startDate"};
+	private static final String[] FETCH_SQL = new String[SORT_COLUMNS.length * 4];
+	private static final String[] FETCH_AFTER_SQL = new String[SORT_COLUMNS.length * 4];
+
+	static {
+		for (String sortBy : SORT_COLUMNS) {
+			for (boolean ascendingOrder : new boolean[]{true, false}) {
+				for (boolean flag : new boolean[]{true, false}) {
+					FETCH_SQL[shape(sortBy, ascendingOrder, flag)] = buildFetchEmployeeSql(flag, sortBy, ascendingOrder);
+					FETCH_AFTER_SQL[shape(sortBy, ascendingOrder, flag)] = buildFetchEmployeeAfterSql(sortBy,
+							ascendingOrder, flag);
+				}
+			}
+		}
+	}
+	private static final String SUMMARY_COLUMNS = "COUNT(*), SUM(CAST(salary AS DOUBLE)), MIN(salary), MAX(salary)";
+
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@Autowired
+	private ApplicationEventPublisher events;
+
+	@Value("${employees.upsert.batch-size:500}")
+	private int upsertBatchSize;
+
+	@Value("${employees.bulk.max-listed-changes:10000}")
+	private int maxListedChanges;
+
+	@Autowired(required = false)
+	private EmployeeColumnStore columns; // null unless employees.columnar.enabled
+
+	@Autowired(required = false)
+	private SalaryIndex salaryIndex; // null unless employees.salary-index.enabled
+
+	@Override
+	@Timed(TIMER)
+	public WriteResult insertEmployee(Employee employee) {
+		if (!writeUnique(INSERT_SQL, employee)) {
+			// only a failed insert pays for finding out which of the two keys it hit
+			return existsByEmployeeId(employee.getId()) ? WriteResult.ID_EXISTS : WriteResult.LOGIN_EXISTS;
+		}
+		events.publishEvent(new EmployeesChangedEvent(new EmployeeChange(null, employee)));
+		return WriteResult.WRITTEN;
+	}
+
+	@Override
+	@Timed(TIMER)
+	public WriteResult updateEmployee(Employee employee) {
+		// H2 1.4.200 does not apply an UPDATE wrapped in OLD TABLE, so lock and read the old row first
+		List<Employee> before = queryDetached("SELECT * FROM employees WHERE id = ? FOR UPDATE", employee.getId());
+		if (before.isEmpty()) {
+			return WriteResult.NO_SUCH_EMPLOYEE;
+		}
+		if (!writeUnique(UPDATE_SQL, employee)) {
+			return WriteResult.LOGIN_EXISTS;
+		}
+		events.publishEvent(new EmployeesChangedEvent(new EmployeeChange(before.get(0), employee)));
+		return WriteResult.WRITTEN;
+	}
+
+	/**
+	 * Runs {@link #INSERT_SQL} or {@link #UPDATE_SQL} for the employee on the
+	 * current connection. A unique violation is caught at the JDBC level,
+	 * before Hibernate would mark the whole transaction for rollback, and
+	 * H2 only undoes the failed statement.
+	 *
+	 * @return {@literal false} if the id or the login is taken
+	 */
+	private boolean writeUnique(String sql, Employee employee) {
+		Session session = entityManager.unwrap(Session.class);
+		session.flush();
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				statement.setString(1, employee.getLogin());
+				statement.setString(2, employee.getName());
+				statement.setFloat(3, employee.getSalary());
+				statement.setDate(4, Date.valueOf(employee.getStartDate()));
+				statement.setString(5, employee.getId());
+				statement.executeUpdate();
+				return true;
+			}
+			catch (SQLException e) {
+				if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+					return false;
+				}
+				throw e;
+			}
+		});
+	}
+
+	@Override
+	@Timed(TIMER)
+	public boolean deleteEmployee(String id) {
+		// an OLD TABLE DELETE makes H2 1.4.200 lose later writes of the transaction, so like an update
+		List<Employee> before = queryDetached("SELECT * FROM employees WHERE id = ? FOR UPDATE", id);
+		if (before.isEmpty()) {
+			return false;
+		}
+		entityManager.createNativeQuery("DELETE FROM employees WHERE id = ?").setParameter(1, id).executeUpdate();
+		events.publishEvent(new EmployeesChangedEvent(new EmployeeChange(before.get(0), null)));
+		return true;
+	}
+
+	@Override
+	@Timed(TIMER)
+	public int raiseSalaries(float minSalary, float maxSalary, LocalDate startedBefore, double percent) {
+		double factor = 1 + percent / 100;
+		String where = " WHERE salary >= ? AND salary < ?" + (null == startedBefore ? "" : " AND startDate < ?");
+		Object[] parameters = null == startedBefore ? new Object[]{minSalary, maxSalary}
+				: new Object[]{minSalary, maxSalary, Date.valueOf(startedBefore)};
+		int count = lockWhere(where, parameters);
+		if (count == 0) {
+			return 0;
+		}
+		// H2 would otherwise bind the factor as a REAL like the salary
+		String raised = "CAST(CAST(salary AS DOUBLE) * CAST(? AS DOUBLE) AS REAL)";
+		Object[] raiseParameters = new Object[parameters.length + 1];
+		raiseParameters[0] = factor;
+		System.arraycopy(parameters, 0, raiseParameters, 1, parameters.length);
+		List<EmployeeChange> changes = null;
+		if (count <= maxListedChanges) {
+			changes = new ArrayList<>(count);
+			for (Employee e : queryDetached("SELECT * FROM employees" + where, parameters)) {
+				// the same float times double rounded to float as the statement
+				changes.add(new EmployeeChange(e, new Employee(e.getId(), e.getLogin(), e.getName(),
+						(float) (e.getSalary() * factor), e.getStartDate())));
+			}
+		}
+		else {
+			events.publishEvent(new EmployeesChangingEvent("SELECT 'UPDATE', id, login, name, " + raised
+					+ ", startDate FROM employees" + where + " ORDER BY id", raiseParameters));
+		}
+		Query update = entityManager.createNativeQuery("UPDATE employees SET salary = " + raised + where);
+		for (int i = 0; i < raiseParameters.length; i++) {
+			update.setParameter(i + 1, raiseParameters[i]);
+		}
+		// the locked rows can not leave the set, but rows committed meanwhile can join it
+		if (update.executeUpdate() != count) {
+			throw new ConcurrencyFailureException("Employees were changed while their salaries were raised");
+		}
+		events.publishEvent(null == changes ? EmployeesChangedEvent.unlisted() : new EmployeesChangedEvent(changes));
+		return count;
+	}
+
+	@Override
+	@Timed(TIMER)
+	public int deleteEmployees(Collection<String> ids) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		String in = " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+		Object[] parameters = ids.toArray();
+		int count = lockWhere(in, parameters);
+		if (count == 0) {
+			return 0;
+		}
+		List<EmployeeChange> changes = null;
+		if (count <= maxListedChanges) {
+			// like deleteEmployee, read the old rows rather than deleting from OLD TABLE
+			changes = new ArrayList<>(count);
+			for (Employee e : queryDetached("SELECT * FROM employees" + in, parameters)) {
+				changes.add(new EmployeeChange(e, null));
+			}
+		}
+		else {
+			events.publishEvent(new EmployeesChangingEvent(
+					"SELECT 'DELETE', id, NULL, NULL, NULL, NULL FROM employees" + in + " ORDER BY id", parameters));
+		}
+		Query delete = entityManager.createNativeQuery("DELETE FROM employees" + in);
+		for (int i = 0; i < parameters.length; i++) {
+			delete.setParameter(i + 1, parameters[i]);
+		}
+		// an employee with one of the ids can be inserted meanwhile
+		if (delete.executeUpdate() != count) {
+			throw new ConcurrencyFailureException("Employees were inserted while they were deleted");
+		}
+		events.publishEvent(null == changes ? EmployeesChangedEvent.unlisted() : new EmployeesChangedEvent(changes));
+		return count;
+	}
+
+	/**
+	 * Locks the employees a set-wise write is about to change and counts them
+	 * a fetch at a time, so that they are not held in memory unless there are
+	 * few enough to list their changes.
+	 *
+	 * @return the number of employees locked
+	 */
+	private int lockWhere(String where, Object... parameters) {
+		Session session = entityManager.unwrap(Session.class);
+		session.flush();
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(
+					"SELECT id FROM employees" + where + " FOR UPDATE")) {
+				statement.setFetchSize(STREAM_FETCH_SIZE);
+				for (int i = 0; i < parameters.length; i++) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+				int count = 0;
+				try (ResultSet rows = statement.executeQuery()) {
+					while (rows.next()) {
+						count++;
+					}
+				}
+				return count;
+			}
+		});
+	}
+
 	@Override
-	public boolean updateEmployee(Employee employee) {
-		Query updateQuery = entityManager
-				.createNativeQuery("UPDATE employees SET login = ?, name = ?, salary = ?, startDate = ? WHERE id = ?;")
-				.setParameter(1, employee.getLogin()).setParameter(2, employee.getName())
-				.setParameter(3, employee.getSalary())
-				.setParameter(4, employee.getStartDate().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")))
-				.setParameter(5, employee.getId());
-		return updateQuery.executeUpdate() > 0;
+	@Timed(TIMER)
+	public int upsertEmployees(List<Employee> employees) {
+		if (employees.isEmpty()) {
+			return 0;
+		}
+		List<EmployeeChange> changes = new ArrayList<>(employees.size());
+		Session session = entityManager.unwrap(Session.class);
+		session.flush();
+		session.doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(UPSERT_SQL)) {
+				for (int from = 0; from < employees.size(); from += upsertBatchSize) {
+					List<Employee> batch = employees.subList(from, Math.min(from + upsertBatchSize, employees.size()));
+					Map<String, Employee> before = lockEmployees(session, connection, batch);
+					for (Employee employee : batch) {
+						statement.setString(1, employee.getId());
+						statement.setString(2, employee.getLogin());
+						statement.setString(3, employee.getName());
+						statement.setFloat(4, employee.getSalary());
+						statement.setDate(5, Date.valueOf(employee.getStartDate()));
+						statement.addBatch();
+						changes.add(new EmployeeChange(before.get(employee.getId()), employee));
+					}
+					statement.executeBatch();
+				}
+			}
+		});
+		events.publishEvent(new EmployeesChangedEvent(changes));
+		return employees.size();
+	}
+
+	/**
+	 * Reads and locks the current rows of a batch about to be upserted, so that
+	 * the change event carries their old values.
+	 */
+	private static Map<String, Employee> lockEmployees(Session session, Connection connection, List<Employee> batch) {
+		StringBuilder sql = new StringBuilder("SELECT * FROM employees WHERE id IN (");
+		Object[] ids = new Object[batch.size()];
+		for (int i = 0; i < ids.length; i++) {
+			sql.append(i > 0 ? ", ?" : "?");
+			ids[i] = batch.get(i).getId();
+		}
+		Map<String, Employee> before = new HashMap<>();
+		queryDetached(session, connection, sql.append(") FOR UPDATE").toString(), ids)
+				.forEach(e -> before.put(e.getId(), e));
+		return before;
+	}
+
+	/**
+	 * Runs a native query on the current connection and maps the rows to
+	 * employees that are not attached to the persistence context. Unlike managed
+	 * entities they keep the values returned by the query, even for rows the
+	 * statement itself changed.
+	 */
+	private List<Employee> queryDetached(String sql, Object... parameters) {
+		Session session = entityManager.unwrap(Session.class);
+		session.flush();
+		return session.doReturningWork(connection -> queryDetached(session, connection, sql, parameters));
+	}
+
+	private static List<Employee> queryDetached(Session session, Connection connection, String sql,
+			Object... parameters) {
+		StatelessSession stateless = session.getSessionFactory().openStatelessSession(connection);
+		try {
+			NativeQuery<Employee> query = stateless.createNativeQuery(sql, Employee.class);
+			for (int i = 0; i < parameters.length; i++) {
+				query.setParameter(i + 1, parameters[i]);
+			}
+			return query.getResultList();
+		}
+		finally {
+			stateless.close();
+		}
+	}
+
+	/**
+	 * @return whether to read from the column store, which only holds committed employees once loaded
+	 */
+	private boolean readColumns() {
+		return null != columns && columns.isLoaded() && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+	}
+
+	/**
+	 * @return whether to read a list in the given order from the salary index, which only holds committed employees once loaded
+	 */
+	private boolean readSalaryIndex(String sortBy) {
+		return null != salaryIndex && salaryIndex.isLoaded() && "salary".equals(sortBy)
+				&& TransactionSynchronizationManager.isCurrentTransactionReadOnly();
 	}
 
 	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
 	public List<Employee> fetchEmployee(float minSalary, float maxSalary, int limit, int offset, String sortBy,
 			boolean ascendingOrder) {
+		if (readSalaryIndex(sortBy)) {
+			return salaryIndex.fetchEmployee(minSalary, maxSalary, limit, offset, ascendingOrder);
+		}
+		if (readColumns()) {
+			return columns.fetchEmployee(minSalary, maxSalary, limit, offset, sortBy, ascendingOrder);
+		}
+		Query query = entityManager.createNativeQuery(fetchEmployeeSql(limit > 0, sortBy, ascendingOrder), Employee.class)
+				.setParameter(1, minSalary).setParameter(2, maxSalary);
+		if (limit > 0) {
+			query.setParameter(3, limit).setParameter(4, Math.max(offset, 0));
+		}
+		return query.getResultList();
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public void streamEmployee(float minSalary, float maxSalary, int limit, int offset, String sortBy,
+			boolean ascendingOrder, EmployeeRowHandler handler) {
+		if (readSalaryIndex(sortBy)) {
+			try {
+				for (Iterator<Employee> it = salaryIndex.range(minSalary, maxSalary, limit, offset, ascendingOrder)
+						.iterator(); it.hasNext(); ) {
+					Employee e = it.next();
+					handler.handle(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
+		if (readColumns()) {
+			try {
+				for (Employee e : columns.fetchEmployee(minSalary, maxSalary, limit, offset, sortBy, ascendingOrder)) {
+					handler.handle(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return;
+		}
+		entityManager.unwrap(Session.class).doWork(connection -> {
+			try (PreparedStatement statement = connection.prepareStatement(
+					fetchEmployeeSql(limit > 0, sortBy, ascendingOrder), ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				statement.setFetchSize(STREAM_FETCH_SIZE);
+				statement.setFloat(1, minSalary);
+				statement.setFloat(2, maxSalary);
+				if (limit > 0) {
+					statement.setInt(3, limit);
+					statement.setInt(4, Math.max(offset, 0));
+				}
+				try (ResultSet rows = statement.executeQuery()) {
+					while (rows.next()) {
+						handler.handle(rows.getString("id"), rows.getString("login"), rows.getString("name"),
+								rows.getFloat("salary"), rows.getObject("startDate", LocalDate.class));
+					}
+				}
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * @param paged whether limit and offset are bound as the third and fourth parameter
+	 * @throws IllegalArgumentException if the employees can not be sorted by the column
+	 */
+	static String fetchEmployeeSql(boolean paged, String sortBy, boolean ascendingOrder) {
+		return FETCH_SQL[shape(sortBy, ascendingOrder, paged)];
+	}
+
+	private static String buildFetchEmployeeSql(boolean paged, String sortBy, boolean ascendingOrder) {
 		String sql = "SELECT * FROM employees WHERE salary >= ? AND salary < ?";
 
-		if (null != sortBy && !"".equals(sortBy)) {
+		if (!"".equals(sortBy)) {
 			sql += " ORDER BY " + sortBy + " " + (ascendingOrder ? "ASC" : "DESC");
 		}
-		if (limit > 0) {
-			sql += " LIMIT " + limit;
-			if (offset > 0) {
-				sql += " OFFSET " + offset;
+		return paged ? sql + " LIMIT ? OFFSET ?" : sql;
+	}
+
+	/**
+	 * @return the index of a list statement in {@link #FETCH_SQL} and {@link #FETCH_AFTER_SQL}
+	 */
+	private static int shape(String sortBy, boolean ascendingOrder, boolean flag) {
+		String column = null == sortBy ? "" : sortBy;
+		for (int i = 0; i < SORT_COLUMNS.length; i++) {
+			if (SORT_COLUMNS[i].equals(column)) {
+				return i * 4 + (ascendingOrder ? 0 : 2) + (flag ? 1 : 0);
+			}
+		}
+		throw new IllegalArgumentException("Can not sort by '" + sortBy + "'");
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public List<Employee> fetchEmployeeAfter(float minSalary, float maxSalary, int limit, String sortBy,
+			boolean ascendingOrder, Object lastSortValue, String lastId) {
+		if (readSalaryIndex(sortBy)) {
+			return salaryIndex.fetchEmployeeAfter(minSalary, maxSalary, limit, ascendingOrder, (Float) lastSortValue,
+					lastId);
+		}
+		if (readColumns()) {
+			return columns.fetchEmployeeAfter(minSalary, maxSalary, limit, sortBy, ascendingOrder, lastSortValue, lastId);
+		}
+		boolean byId = null == sortBy || "".equals(sortBy);
+		Query query = entityManager
+				.createNativeQuery(fetchEmployeeAfterSql(sortBy, ascendingOrder, null != lastId), Employee.class)
+				.setParameter(1, minSalary).setParameter(2, maxSalary);
+		int position = 3;
+		if (null != lastId) {
+			if (!byId) {
+				Object value = lastSortValue instanceof LocalDate ? Date.valueOf((LocalDate) lastSortValue)
+						: lastSortValue;
+				query.setParameter(position++, value).setParameter(position++, value);
 			}
+			query.setParameter(position++, lastId);
+		}
+		@SuppressWarnings("unchecked")
+		List<Employee> employees = query.setParameter(position, limit).getResultList();
+		return employees;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the employees can not be sorted by the column
+	 */
+	static String fetchEmployeeAfterSql(String sortBy, boolean ascendingOrder, boolean afterLast) {
+		return FETCH_AFTER_SQL[shape(sortBy, ascendingOrder, afterLast)];
+	}
+
+	private static String buildFetchEmployeeAfterSql(String sortBy, boolean ascendingOrder, boolean afterLast) {
+		boolean byId = "".equals(sortBy);
+		String direction = ascendingOrder ? "ASC" : "DESC";
+		String after = ascendingOrder ? ">" : "<";
+		String sql = "SELECT * FROM employees WHERE salary >= ? AND salary < ?";
+
+		if (afterLast) {
+			// the redundant single column bound lets H2 start the index range at the last row
+			sql += byId ? " AND id " + after + " ?"
+					: " AND " + sortBy + " " + after + "= ? AND (" + sortBy + ", id) " + after + " (?, ?)";
 		}
-		return entityManager.createNativeQuery(sql, Employee.class).setParameter(1, minSalary)
-				.setParameter(2, maxSalary).getResultList();
+		return sql + " ORDER BY " + (byId ? "" : sortBy + " " + direction + ", ") + "id " + direction + " LIMIT ?";
 	}
 
 	@Override
+	@Timed(TIMER)
 	public boolean existsByEmployeeId(String eid) {
 		Query query = entityManager.createNativeQuery("SELECT COUNT(id) FROM employees WHERE id = ?;").setParameter(1,
 				eid);
@@ -59,10 +526,96 @@ public class EmployeesRepositoryImpl implements EmployeesRepositoryCustom {
 	}
 
 	@Override
-	public boolean existsByLogin(String login) {
-		Query query = entityManager.createNativeQuery("SELECT COUNT(login) FROM employees WHERE login = ?;")
-				.setParameter(1, login);
-		BigInteger count = (BigInteger) query.getSingleResult();
-		return count.intValue() > 0;
+	@Timed(TIMER)
+	public Map<String, String> findIdsByLogins(Collection<String> logins) {
+		Map<String, String> owners = new HashMap<>();
+		if (logins.isEmpty()) {
+			return owners;
+		}
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = entityManager.createNativeQuery("SELECT login, id FROM employees WHERE login IN (:logins)")
+				.setParameter("logins", logins).getResultList();
+		rows.forEach(row -> owners.put((String) row[0], (String) row[1]));
+		return owners;
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public SalarySummary summarizeSalaries(float minSalary, float maxSalary) {
+		if (readColumns()) {
+			return columns.summarizeSalaries(minSalary, maxSalary);
+		}
+		Object[] row = (Object[]) entityManager
+				.createNativeQuery("SELECT " + SUMMARY_COLUMNS + " FROM employees WHERE salary >= ? AND salary < ?")
+				.setParameter(1, minSalary).setParameter(2, maxSalary).getSingleResult();
+		return toSummary(row, 0);
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public Map<Integer, SalarySummary> summarizeSalariesByStartYear(float minSalary, float maxSalary) {
+		if (readColumns()) {
+			return columns.summarizeSalariesByStartYear(minSalary, maxSalary);
+		}
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = entityManager
+				.createNativeQuery("SELECT EXTRACT(YEAR FROM startDate) AS y, " + SUMMARY_COLUMNS
+						+ " FROM employees WHERE salary >= ? AND salary < ? GROUP BY y ORDER BY y")
+				.setParameter(1, minSalary).setParameter(2, maxSalary).getResultList();
+		Map<Integer, SalarySummary> summaries = new LinkedHashMap<>();
+		rows.forEach(row -> summaries.put(((Number) row[0]).intValue(), toSummary(row, 1)));
+		return summaries;
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public long[] salaryHistogram(float minSalary, float maxSalary, double origin, double bucketWidth, int buckets) {
+		if (readColumns()) {
+			return columns.salaryHistogram(minSalary, maxSalary, origin, bucketWidth, buckets);
+		}
+		@SuppressWarnings("unchecked")
+		List<Object[]> rows = entityManager
+				// clamped before the cast, the quotient of a narrow bucket does not fit an INT
+				.createNativeQuery("SELECT CAST(LEAST(GREATEST(FLOOR((salary - ?) / ?), 0), ?) AS INT) AS b, COUNT(*)"
+						+ " FROM employees WHERE salary >= ? AND salary < ? GROUP BY b")
+				.setParameter(1, origin).setParameter(2, bucketWidth).setParameter(3, buckets - 1)
+				.setParameter(4, minSalary).setParameter(5, maxSalary).getResultList();
+		long[] counts = new long[buckets];
+		rows.forEach(row -> counts[((Number) row[0]).intValue()] = ((Number) row[1]).longValue());
+		return counts;
+	}
+
+	@Override
+	@Timed(TIMER)
+	@Transactional(readOnly = true)
+	public Double[] salaryPercentiles(float minSalary, float maxSalary, double... fractions) {
+		if (readColumns()) {
+			return columns.salaryPercentiles(minSalary, maxSalary, fractions);
+		}
+		StringBuilder sql = new StringBuilder("SELECT ");
+		for (int i = 0; i < fractions.length; i++) {
+			// the fractions are inlined, H2 requires them to be constants
+			sql.append(i > 0 ? ", " : "").append("PERCENTILE_CONT(").append(fractions[i])
+					.append(") WITHIN GROUP (ORDER BY salary)");
+		}
+		// the constant column keeps the result an array for a single fraction too
+		sql.append(", 0 FROM employees WHERE salary >= ? AND salary < ?");
+		Object[] row = (Object[]) entityManager.createNativeQuery(sql.toString()).setParameter(1, minSalary)
+				.setParameter(2, maxSalary).getSingleResult();
+		Double[] percentiles = new Double[fractions.length];
+		for (int i = 0; i < fractions.length; i++) {
+			percentiles[i] = null == row[i] ? null : ((Number) row[i]).doubleValue();
+		}
+		return percentiles;
+	}
+
+	private static SalarySummary toSummary(Object[] row, int from) {
+		return new SalarySummary(((Number) row[from]).longValue(),
+				null == row[from + 1] ? 0 : ((Number) row[from + 1]).doubleValue(),
+				null == row[from + 2] ? null : ((Number) row[from + 2]).doubleValue(),
+				null == row[from + 3] ? null : ((Number) row[from + 3]).doubleValue());
 	}
 }
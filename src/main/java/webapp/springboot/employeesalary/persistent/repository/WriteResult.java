@@ -0,0 +1,25 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+/**
+ * Outcome of a single employee write. A write that is not {@link #WRITTEN}
+ * has changed nothing, and the transaction it ran in can go on.
+ */
+public enum WriteResult {
+
+    WRITTEN,
+
+    /**
+     * an update or delete found no employee with the id
+     */
+    NO_SUCH_EMPLOYEE,
+
+    /**
+     * an insert found an employee with the id already
+     */
+    ID_EXISTS,
+
+    /**
+     * another employee has the login already
+     */
+    LOGIN_EXISTS
+}
@@ -0,0 +1,88 @@
+package webapp.springboot.employeesalary.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import webapp.springboot.employeesalary.persistent.changelog.EmployeeChangeLog;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeReadModel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the application up in the background once it is ready and serves
+ * requests, enabled with {@code employees.warm-up.background=true}. First the
+ * beans that {@code spring.main.lazy-initialization} left to their first use
+ * are created, then every {@link EmployeeReadModel} is loaded. Each one is
+ * loaded between commits, see {@link EmployeeChangeLog#betweenCommits}, so
+ * that it neither misses nor repeats a write committed meanwhile. Until then
+ * the employees are read from the database.
+ */
+@Component
+@ConditionalOnProperty(name = "employees.warm-up.background", havingValue = "true")
+public class BackgroundWarmUp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundWarmUp.class);
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    private ObjectProvider<EmployeeReadModel> readModels;
+
+    @Autowired
+    private EmployeeChangeLog changeLog;
+
+    private volatile Thread thread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        thread = new Thread(this::warmUp, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * waits until the warm-up is done, for tests and benchmarks
+     */
+    public void await() throws InterruptedException {
+        if (null != thread) {
+            thread.join();
+        }
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        createLazySingletons();
+        readModels.orderedStream().forEach(model -> {
+            try {
+                changeLog.betweenCommits(model::rebuild);
+            }
+            catch (RuntimeException e) {
+                LOG.error("Loading {} failed, it is not read", model.getClass().getSimpleName(), e);
+            }
+        });
+        LOG.info("Warmed up in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void createLazySingletons() {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getMergedBeanDefinition(name);
+            if (definition.isSingleton() && !definition.isAbstract() && !beanFactory.containsSingleton(name)) {
+                try {
+                    beanFactory.getBean(name);
+                }
+                catch (BeansException e) {
+                    LOG.warn("Creating bean {} failed, it is created on its first use", name, e);
+                }
+            }
+        }
+    }
+}
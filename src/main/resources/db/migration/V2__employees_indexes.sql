@@ -0,0 +1,6 @@
+-- Access paths of the employee list: a salary range filter, optionally sorted
+-- by name, salary or startDate. The id suffix keeps every index in the total
+-- (sort value, id) order used by keyset paging.
+CREATE INDEX idx_employees_salary_id ON employees (salary, id);
+CREATE INDEX idx_employees_name_id ON employees (name, id);
+CREATE INDEX idx_employees_startdate_id ON employees (startDate, id);
@@ -0,0 +1,14 @@
+-- Append-only log of every committed write of an employee, read by
+-- GET /users/changes. seq is assigned in commit order, the values are the
+-- new ones and null for a delete.
+CREATE TABLE employee_changes
+(
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    op VARCHAR(6) NOT NULL,
+    id VARCHAR(10) NOT NULL,
+    login VARCHAR(60),
+    name VARCHAR(60),
+    salary REAL,
+    startDate DATE,
+    changedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,67 @@
+package webapp.springboot.employeesalary.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalarySketchTest {
+
+    @Test
+    void quantilesAreWithinOnePercent() {
+        Random random = new Random(42);
+        float[] salaries = new float[10_000];
+        SalarySketch sketch = new SalarySketch();
+        for (int i = 0; i < salaries.length; i++) {
+            salaries[i] = 100 + random.nextFloat() * 20_000;
+            sketch.add(salaries[i]);
+        }
+        java.util.Arrays.sort(salaries);
+
+        for (double fraction : new double[]{0, 0.5, 0.9, 0.99, 1}) {
+            double exact = salaries[(int) Math.round(fraction * (salaries.length - 1))];
+            assertEquals(exact, sketch.quantile(fraction), exact * 0.01, "quantile " + fraction);
+        }
+    }
+
+    @Test
+    void removeAndMergeKeepCounts() {
+        SalarySketch left = new SalarySketch();
+        SalarySketch right = new SalarySketch();
+        left.add(0);
+        left.add(1000);
+        right.add(2000);
+        right.add(3000);
+        right.remove(3000);
+        left.merge(right);
+
+        assertEquals(3, left.getCount());
+        assertEquals(0, left.quantile(0));
+        assertEquals(2000, left.quantile(1), 20);
+        assertNull(new SalarySketch().quantile(0.5));
+    }
+
+    @Test
+    void salariesBeyondTheLargestFloatAreInTheLastBucket() {
+        SalarySketch sketch = new SalarySketch();
+        sketch.add(Float.MAX_VALUE);
+        sketch.add(Double.POSITIVE_INFINITY);
+        sketch.add(1e39);
+
+        assertEquals(3, sketch.getCount());
+        assertEquals(Float.MAX_VALUE, sketch.quantile(0), Float.MAX_VALUE * 0.01);
+        assertEquals(sketch.quantile(0), sketch.quantile(1));
+        sketch.remove(Double.POSITIVE_INFINITY);
+        assertEquals(2, sketch.getCount());
+    }
+
+    @Test
+    void highQuantileOfFewSalariesIsTheHighest() {
+        SalarySketch sketch = new SalarySketch();
+        sketch.add(1234);
+        sketch.add(19234.5);
+
+        assertEquals(19234.5, sketch.quantile(0.99), 192.35);
+    }
+}
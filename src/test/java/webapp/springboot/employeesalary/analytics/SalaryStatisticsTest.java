@@ -0,0 +1,90 @@
+package webapp.springboot.employeesalary.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({SalaryStatistics.class, SalaryStatisticsTest.ChangeForwarder.class})
+class SalaryStatisticsTest {
+
+    /**
+     * applies the changes of the uncommitted test transaction to the statistics
+     */
+    static class ChangeForwarder {
+
+        @Autowired
+        private SalaryStatistics statistics;
+
+        @EventListener
+        void onEmployeesChanged(EmployeesChangedEvent event) {
+            statistics.onEmployeesChanged(event);
+        }
+    }
+
+    @Autowired
+    private SalaryStatistics statistics;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Test
+    void rebuildCountsTheLargestSalary() {
+        repository.upsertEmployees(Arrays.asList(employee(1, 1000f), employee(2, Float.MAX_VALUE)));
+        statistics.rebuild();
+        assertEquals(2, statistics.snapshot().getSummary().getCount());
+
+        repository.deleteEmployee("e2");
+        assertEquals(1, statistics.snapshot().getSummary().getCount());
+        assertEquals(1000, statistics.snapshot().getSummary().getSum());
+    }
+
+    @Test
+    void sumsDoNotDriftWhenLargeSalariesComeAndGo() {
+        statistics.rebuild();
+        repository.upsertEmployees(Arrays.asList(employee(1, 1.5f), employee(2, 2.5f)));
+        for (int i = 0; i < 100; i++) {
+            repository.upsertEmployees(Arrays.asList(employee(3, 1e30f)));
+            repository.deleteEmployee("e3");
+        }
+
+        SalaryStatistics.Snapshot snapshot = statistics.snapshot();
+        assertEquals(2, snapshot.getSummary().getCount());
+        assertEquals(4, snapshot.getSummary().getSum());
+        assertEquals(0.5, snapshot.getStandardDeviation());
+
+        repository.deleteEmployee("e2");
+        assertEquals(0, statistics.snapshot().getStandardDeviation());
+    }
+
+    @Test
+    void infiniteSalariesAreLeftOut() {
+        repository.upsertEmployees(Arrays.asList(employee(1, 1000f), employee(2, Float.POSITIVE_INFINITY)));
+        statistics.rebuild();
+        assertEquals(1, statistics.snapshot().getSummary().getCount());
+
+        repository.upsertEmployees(Arrays.asList(employee(3, Float.POSITIVE_INFINITY)));
+        repository.upsertEmployees(Arrays.asList(employee(2, 3000f)));
+        repository.deleteEmployee("e3");
+
+        SalaryStatistics.Snapshot snapshot = statistics.snapshot(1);
+        assertEquals(2, snapshot.getSummary().getCount());
+        assertEquals(4000, snapshot.getSummary().getSum());
+        assertEquals(1000, snapshot.getStandardDeviation());
+        assertEquals(3000, snapshot.getQuantiles()[0], 30);
+    }
+
+    private static Employee employee(int id, float salary) {
+        return new Employee("e" + id, "login" + id, "Employee " + id, salary, LocalDate.of(2001, 11, 16));
+    }
+}
@@ -0,0 +1,122 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.ingest.EmployeeCsvIngestService;
+import webapp.springboot.employeesalary.ingest.UploadJobService;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({EmployeeSalaryController.class, AsyncEmployeeLookupController.class})
+@Import({AsyncExecutionConfiguration.class, EmployeeJsonCache.class})
+@TestPropertySource(properties = {"employees.web.execution=async",
+        "employees.web.async.threads=1", "employees.web.async.queue-capacity=1"})
+class AsyncEmployeeLookupControllerTest {
+
+    @MockBean
+    private EmployeesRepository repository;
+
+    @MockBean
+    private EmployeeCsvIngestService ingestService;
+
+    @MockBean
+    private UploadJobService uploadJobs;
+
+    @Autowired
+    private EmployeeJsonCache cache;
+
+    @Autowired
+    @Qualifier("handlerExecutor")
+    private ThreadPoolExecutor executor;
+
+    @Autowired
+    private MockMvc mvc;
+
+    private final Employee employee = new Employee("e0001","hpotter","Harry Potter",
+            1400, LocalDate.of(2001,11,16));
+
+    @BeforeEach
+    void clearCache() {
+        cache.invalidateAll();
+    }
+
+    @Test
+    void readsOnHandlerThreadThenFromCache() throws Exception {
+        String[] readBy = new String[1];
+        when(repository.findById("e0001")).thenAnswer(invocation -> {
+            readBy[0] = Thread.currentThread().getName();
+            return Optional.of(employee);
+        });
+        when(repository.findById("e0002")).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = mvc.perform(get("/users/e0001"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.login", is("hpotter")));
+        }
+        verify(repository,times(1)).findById("e0001");
+        assertTrue(readBy[0].startsWith("handler-"), readBy[0]);
+        assertEquals(1, cache.stats().hitCount());
+
+        MvcResult result = mvc.perform(get("/users/e0002")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("No such employee")));
+    }
+
+    @Test
+    void rejectsWhenTooManyRequestsWait() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the only thread is busy and the only place in the queue taken
+            executor.execute(() -> {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.execute(() -> {});
+
+            MvcResult result = mvc.perform(get("/users/e0001")).andReturn();
+            mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isServiceUnavailable());
+            // a list is rejected before it is started
+            mvc.perform(get("/users"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.message", startsWith("Too many requests")));
+            verify(repository,never()).findById(any());
+        }
+        finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import webapp.springboot.employeesalary.persistent.changelog.EmployeeChangeHandler;
+import webapp.springboot.employeesalary.persistent.changelog.EmployeeChangeLog;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(EmployeeChangesController.class)
+class EmployeeChangesControllerTest {
+
+    @MockBean
+    private EmployeeChangeLog changeLog;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void getChangesStreamsTheChangesSince() throws Exception {
+        doAnswer(invocation -> {
+            EmployeeChangeHandler handler = invocation.getArgument(2);
+            handler.handle(8, "UPDATE", "e0001", new Employee("e0001","hpotter","Harry Potter",
+                    1500, LocalDate.of(2001,11,16)));
+            handler.handle(9, "DELETE", "e0002", null);
+            return null;
+        }).when(changeLog).read(eq(7L), eq(100), any());
+
+        MvcResult result = mvc.perform(get("/users/changes").param("since","7").param("limit","100")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"results\":[" +
+                        "{\"seq\":8,\"op\":\"UPDATE\",\"id\":\"e0001\",\"employee\":{\"id\":\"e0001\",\"name\":\"Harry Potter\",\"login\":\"hpotter\",\"salary\":1500.0,\"startDate\":\"2001-11-16\"}},\n" +
+                        "{\"seq\":9,\"op\":\"DELETE\",\"id\":\"e0002\",\"employee\":null}],\"last\":9}"));
+    }
+
+    @Test
+    void getChangesWithoutNewChangesKeepsSince() throws Exception {
+        MvcResult result = mvc.perform(get("/users/changes").param("since","42")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results").isEmpty())
+                .andExpect(jsonPath("$.last", is(42)));
+
+        result = mvc.perform(get("/users/changes").param("since","-1")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+        verify(changeLog,times(1)).read(anyLong(), anyInt(), any());
+    }
+}
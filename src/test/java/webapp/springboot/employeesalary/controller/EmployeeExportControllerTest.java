@@ -0,0 +1,92 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.ingest.EmployeeCsvIngestService;
+import webapp.springboot.employeesalary.ingest.UploadJobService;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeRowHandler;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({EmployeeExportController.class, EmployeeSalaryController.class})
+@Import({EmployeeCsvIngestService.class, UploadJobService.class, EmployeeJsonCache.class})
+class EmployeeExportControllerTest {
+
+    @MockBean
+    private EmployeesRepository repository;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            EmployeeRowHandler handler = invocation.getArgument(6);
+            handler.handle("e0001", "hpotter", "Potter, Harry", 1234.5f, LocalDate.of(2001,11,16));
+            handler.handle("e0002", "rwesley", "Ron Weasley", 19234.5f, LocalDate.of(2001,11,16));
+            return null;
+        }).when(repository).streamEmployee(anyFloat(), anyFloat(), anyInt(), anyInt(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void exportEmployeesAsCsv() throws Exception {
+        MvcResult result = mvc.perform(get("/users/export").param("minSalary","1000").param("maxSalary","20000"))
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"employees.csv\""))
+                .andExpect(content().string("id,login,name,salary,startDate\n" +
+                        "e0001,hpotter,\"Potter, Harry\",1234.5,2001-11-16\n" +
+                        "e0002,rwesley,Ron Weasley,19234.5,2001-11-16\n"));
+        verify(repository,times(1)).streamEmployee(eq(1000f), eq(20000f), eq(0), eq(0), eq(""), eq(true), any());
+    }
+
+    @Test
+    void exportedFilesAreUploadedAsTheyAre() throws Exception {
+        for (String format : new String[]{"csv", "binary"}) {
+            MvcResult result = mvc.perform(get("/users/export").param("format", format).param("gzip", "true"))
+                    .andReturn();
+            byte[] export = mvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType("application/gzip"))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            mvc.perform(multipart("/users/upload").file(new MockMultipartFile("file", "employees." + format + ".gz", "application/gzip", export)))
+                    .andExpect(status().isCreated());
+        }
+        verify(repository,times(2)).upsertEmployees(argThat(employees -> employees.size() == 2 &&
+                employees.get(0).getName().equals("Potter, Harry") &&
+                employees.get(1).getSalary() == 19234.5f &&
+                employees.get(1).getStartDate().equals(LocalDate.of(2001,11,16))));
+    }
+
+    @Test
+    void exportEmployeesWithUnknownFormat() throws Exception {
+        MvcResult result = mvc.perform(get("/users/export").param("format","xml")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Currently format 'xml' is not available")));
+        verify(repository,never()).streamEmployee(anyFloat(), anyFloat(), anyInt(), anyInt(), any(), anyBoolean(), any());
+    }
+}
@@ -1,35 +1,72 @@
 package webapp.springboot.employeesalary.controller;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.ingest.EmployeeCsvIngestService;
+import webapp.springboot.employeesalary.ingest.UploadJobService;
 import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeRowHandler;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
 import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+import webapp.springboot.employeesalary.persistent.repository.WriteResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Optional;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.MediaType.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @RunWith(SpringRunner.class)
-@WebMvcTest(EmployeeSalaryController.class)
+@WebMvcTest({EmployeeSalaryController.class, EmployeeLookupController.class})
+@Import({EmployeeCsvIngestService.class, UploadJobService.class, EmployeeJsonCache.class})
+@TestPropertySource(properties = "employees.import.directory=target/test-imports")
 class EmployeeSalaryControllerTest {
 
     @MockBean
     private EmployeesRepository repository;
 
+    @Autowired
+    private EmployeeJsonCache cache;
+
     @Autowired
     private MockMvc mvc;
 
+    @BeforeEach
+    void clearCache() {
+        cache.invalidateAll();
+    }
+
     @Test
     void uploadEmployeeDataCSV() throws Exception {
         String content = "id,login,name,salary,startDate\n" +
@@ -42,6 +79,234 @@ class EmployeeSalaryControllerTest {
 
         mvc.perform(multipart("/users/upload").file(file))
                 .andExpect(status().is(201));
+        verify(repository,times(1)).upsertEmployees(argThat(employees -> employees.size() == 1));
+    }
+
+    @Test
+    void uploadEmployeeDataCSVWithSalaryBeyondFloat() throws Exception {
+        for (String salary : new String[] {"Infinity", "1e39"}) {
+            String content = "id,login,name,salary,startDate\n" +
+                    "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" +
+                    "e0002,rwesley,Ron Weasley," + salary + ",2001-11-16\n";
+            MockMultipartFile file = new MockMultipartFile("file",
+                    "employees.csv",
+                    "text/csv",
+                    content.getBytes("UTF-8"));
+
+            mvc.perform(multipart("/users/upload").file(file))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message", is("Invalid salary")));
+        }
+        verify(repository,never()).upsertEmployees(any());
+    }
+
+    @Test
+    void uploadEmployeeDataCSVInUTF8() throws Exception {
+        String content = "id,login,name,salary,startDate\r\n" +
+                "e0001,jmuller,\"Müller, José\",1234.00,16-Nov-01\r\n" +
+                "e0002,xwang,王小明,19234.50,2001-11-16\r\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+
+        mvc.perform(multipart("/users/upload").file(file))
+                .andExpect(status().is(201));
+        verify(repository,times(1)).upsertEmployees(argThat(employees -> employees.size() == 2 &&
+                employees.get(0).getName().equals("Müller, José") &&
+                employees.get(1).getName().equals("王小明") &&
+                employees.get(1).getStartDate().equals(LocalDate.of(2001,11,16))));
+    }
+
+    @Test
+    void uploadEmployeeDataCSVWithDuplicateLogin() throws Exception {
+        String content = "id,login,name,salary,startDate\n" +
+                "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" +
+                "e0002,hpotter,Ron Weasley,19234.50,2001-11-16\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+
+        mvc.perform(multipart("/users/upload").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Duplicate login found for employees with id 'e0001' and 'e0002'")));
+        verify(repository,never()).upsertEmployees(any());
+    }
+
+    @Test
+    void uploadEmployeeDataCSVWithLoginOfAnotherEmployee() throws Exception {
+        String content = "id,login,name,salary,startDate\n" +
+                "e0002,hpotter,Ron Weasley,19234.50,2001-11-16\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+        when(repository.findIdsByLogins(any())).thenReturn(Collections.singletonMap("hpotter","e0001"));
+
+        mvc.perform(multipart("/users/upload").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Employee login not unique")));
+        verify(repository,never()).upsertEmployees(any());
+    }
+
+    @Test
+    void uploadEmployeeDataCSVWithLoginTakenAfterValidation() throws Exception {
+        String content = "id,login,name,salary,startDate\n" +
+                "e0002,hpotter,Ron Weasley,19234.50,2001-11-16\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+        when(repository.upsertEmployees(any())).thenThrow(new DataIntegrityViolationException("unique login"));
+
+        mvc.perform(multipart("/users/upload").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Employee login not unique")));
+    }
+
+    @Test
+    void uploadEmployeeDataCSVAsynchronously() throws Exception {
+        String content = "id,login,name,salary,startDate\n" +
+                "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" +
+                "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+
+        MvcResult result = mvc.perform(multipart("/users/upload").file(file).param("async","true"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        String id = JsonPath.read(result.getResponse().getContentAsString(), "$.id");
+        assertThat(result.getResponse().getHeader("Location"), endsWith("/users/upload/jobs/" + id));
+
+        awaitUploadJob(id)
+                .andExpect(jsonPath("$.status", is("SUCCEEDED")))
+                .andExpect(jsonPath("$.rowsValidated", is(2)))
+                .andExpect(jsonPath("$.rowsWritten", is(2)))
+                .andExpect(jsonPath("$.error", nullValue()));
+        verify(repository,times(1)).upsertEmployees(argThat(employees -> employees.size() == 2));
+    }
+
+    @Test
+    void uploadEmployeeDataCSVAsynchronouslyWithDuplicateId() throws Exception {
+        String content = "id,login,name,salary,startDate\n" +
+                "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" +
+                "e0001,rwesley,Ron Weasley,19234.50,2001-11-16\n";
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.getBytes("UTF-8"));
+
+        String job = mvc.perform(multipart("/users/upload").file(file).param("async","true"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+
+        awaitUploadJob(JsonPath.read(job, "$.id"))
+                .andExpect(jsonPath("$.status", is("FAILED")))
+                .andExpect(jsonPath("$.rowsWritten", is(0)))
+                .andExpect(jsonPath("$.error", is("Duplicate entry found with id 'e0001'")));
+        verify(repository,never()).upsertEmployees(any());
+        mvc.perform(get("/users/upload/jobs/unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void uploadEmployeeDataCSVAsynchronouslyKeepsTheChunksWrittenBeforeALoginIsTaken() throws Exception {
+        StringBuilder content = new StringBuilder("id,login,name,salary,startDate\n");
+        for (int i = 0; i < 1500; i++) {
+            content.append("e").append(i).append(",login").append(i).append(",Employee,1234.00,2001-11-16\n");
+        }
+        MockMultipartFile file = new MockMultipartFile("file",
+                "employees.csv",
+                "text/csv",
+                content.toString().getBytes("UTF-8"));
+        when(repository.upsertEmployees(any())).thenReturn(1000)
+                .thenThrow(new DataIntegrityViolationException("unique login"));
+
+        String job = mvc.perform(multipart("/users/upload").file(file).param("async","true"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+
+        awaitUploadJob(JsonPath.read(job, "$.id"))
+                .andExpect(jsonPath("$.status", is("FAILED")))
+                .andExpect(jsonPath("$.rowsWritten", is(1000)))
+                .andExpect(jsonPath("$.error", is("Employee login not unique")));
+        verify(repository,times(2)).upsertEmployees(any());
+    }
+
+    @Test
+    void importEmployeeDataCSV() throws Exception {
+        Path directory = Files.createDirectories(Paths.get("target/test-imports"));
+        Files.write(directory.resolve("employees.csv"), ("id,login,name,salary,startDate\n" +
+                "e0001,hpotter,Harry Potter,1234.00,16-Nov-01\n" +
+                "e0002,rwesley,Ron Weasley,19234.50,2001-11-16\n").getBytes(StandardCharsets.UTF_8));
+
+        String job = mvc.perform(post("/users/import").param("file","employees.csv"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+
+        awaitUploadJob(JsonPath.read(job, "$.id"))
+                .andExpect(jsonPath("$.status", is("SUCCEEDED")))
+                .andExpect(jsonPath("$.rowsWritten", is(2)));
+        verify(repository,times(1)).upsertEmployees(argThat(employees -> employees.size() == 2));
+        assertTrue(Files.exists(directory.resolve("employees.csv")));
+
+        mvc.perform(post("/users/import").param("file","../../pom.xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("No such file in the import directory")));
+        mvc.perform(post("/users/import").param("file","missing.csv"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void fetchListOfEmployeesPassesLimitAndOffset() throws Exception {
+        MvcResult result = mvc.perform(get("/users").param("limit","10").param("offset","20"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        verify(repository,times(1)).streamEmployee(eq(0f), eq(4000f), eq(10), eq(20), eq(""), eq(true), any());
+    }
+
+    @Test
+    void fetchListOfEmployeesStreamsValidJSON() throws Exception {
+        doAnswer(invocation -> {
+            EmployeeRowHandler handler = invocation.getArgument(6);
+            handler.handle("e0001","hpotter","Harry \"The Boy\" Potter",1400, LocalDate.of(2001,11,16));
+            handler.handle("e0002","rwesley","Ron\\Weasley",19234.5f, LocalDate.of(2001,11,16));
+            return null;
+        }).when(repository).streamEmployee(anyFloat(), anyFloat(), anyInt(), anyInt(), any(), anyBoolean(), any());
+
+        MvcResult result = mvc.perform(get("/users")).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"results\":[" +
+                        "{\"id\":\"e0001\",\"name\":\"Harry \\\"The Boy\\\" Potter\",\"login\":\"hpotter\",\"salary\":1400.0,\"startDate\":\"2001-11-16\"},\n" +
+                        "{\"id\":\"e0002\",\"name\":\"Ron\\\\Weasley\",\"login\":\"rwesley\",\"salary\":19234.5,\"startDate\":\"2001-11-16\"}]}"));
+    }
+
+    @Test
+    void fetchListOfEmployeesWithCursor() throws Exception {
+        final Employee employee = new Employee("e0001","hpotter","Harry Potter",
+                1400, LocalDate.of(2001,11,16));
+        when(repository.fetchEmployeeAfter(0, 4000, 1, "salary", true, null, null))
+                .thenReturn(Collections.singletonList(employee));
+        MvcResult result = mvc.perform(get("/users").param("limit","1").param("sortBy","salary").param("cursor",""))
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", hasSize(1)))
+                .andReturn().getResponse().getContentAsString();
+        String next = body.substring(body.indexOf("\"next\":\"")+8, body.lastIndexOf('"'));
+
+        result = mvc.perform(get("/users").param("limit","1").param("sortBy","salary").param("cursor",next))
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.next").value(nullValue()));
+        verify(repository,times(1)).fetchEmployeeAfter(0, 4000, 1, "salary", true, 1400f, "e0001");
     }
 
     @Test
@@ -58,9 +323,111 @@ class EmployeeSalaryControllerTest {
     }
 
     @Test
-    void deleteUserById() throws Exception {
-        when(repository.existsByEmployeeId("e0001")).thenReturn(true);
+    void getUserByIdIsCachedUntilDeleted() throws Exception {
+        final Employee employee = new Employee("e0001","hpotter","Harry Potter",
+                1400, LocalDate.of(2001,11,16));
+        when(repository.findById("e0001")).thenReturn(Optional.of(employee));
+        when(repository.deleteEmployee("e0001")).thenReturn(true);
+
+        mvc.perform(get("/users/e0001")).andExpect(status().isOk());
+        mvc.perform(get("/users/e0001")).andExpect(status().isOk());
+        verify(repository,times(1)).findById("e0001");
+
         mvc.perform(delete("/users/e0001"));
-        verify(repository,times(1)).deleteById("e0001");
+        cache.onEmployeesChanged(new EmployeesChangedEvent(new EmployeeChange(employee, null)));
+        when(repository.findById("e0001")).thenReturn(Optional.empty());
+        mvc.perform(get("/users/e0001")).andExpect(status().isBadRequest());
+        verify(repository,times(2)).findById("e0001");
+    }
+
+    @Test
+    void deleteUserById() throws Exception {
+        when(repository.deleteEmployee("e0001")).thenReturn(true);
+        mvc.perform(delete("/users/e0001")).andExpect(status().isOk());
+        mvc.perform(delete("/users/e0002"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("No such employee")));
+        verify(repository,times(1)).deleteEmployee("e0001");
+    }
+
+    @Test
+    void deleteUsersById() throws Exception {
+        when(repository.deleteEmployees(any())).thenReturn(2)
+                .thenThrow(new ConcurrencyFailureException("inserted"));
+        mvc.perform(delete("/users").param("id","e0001,e0002").param("id","e0003","e0001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(2)));
+        verify(repository,times(1)).deleteEmployees(new LinkedHashSet<>(Arrays.asList("e0001","e0002","e0003")));
+        mvc.perform(delete("/users").param("id","e0001"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message", is("Employees were changed meanwhile, try again")));
+        mvc.perform(delete("/users")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void raiseSalaries() throws Exception {
+        when(repository.raiseSalaries(anyFloat(), anyFloat(), any(), anyDouble())).thenReturn(3)
+                .thenThrow(new ConcurrencyFailureException("changed"));
+        mvc.perform(post("/users/raise").param("percent","3.5").param("minSalary","1000")
+                .param("maxSalary","2000").param("startedBefore","2002-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(3)));
+        verify(repository,times(1)).raiseSalaries(1000f, 2000f, LocalDate.of(2002,1,1), 3.5);
+        mvc.perform(post("/users/raise").param("percent","3.5"))
+                .andExpect(status().isConflict());
+
+        mvc.perform(post("/users/raise").param("percent","-100"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("percent must be > -100, found -100.0")));
+        mvc.perform(post("/users/raise").param("percent","5").param("minSalary","10").param("maxSalary","5"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/users/raise").param("percent","5").param("startedBefore","2002-13-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Invalid date")));
+        verify(repository,times(2)).raiseSalaries(anyFloat(), anyFloat(), any(), anyDouble());
+    }
+
+    @Test
+    void createEmployeeMapsTakenIdAndLogin() throws Exception {
+        when(repository.insertEmployee(any())).thenReturn(WriteResult.WRITTEN, WriteResult.ID_EXISTS,
+                WriteResult.LOGIN_EXISTS);
+        mvc.perform(createEmployeeRequest(multipart("/users"))).andExpect(status().isCreated());
+        mvc.perform(createEmployeeRequest(multipart("/users")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Employee ID already exists")));
+        mvc.perform(createEmployeeRequest(multipart("/users")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Employee login not unique")));
+        verify(repository,never()).existsByEmployeeId(any());
+    }
+
+    @Test
+    void updateUserByIdMapsMissingEmployeeAndTakenLogin() throws Exception {
+        when(repository.updateEmployee(any())).thenReturn(WriteResult.WRITTEN, WriteResult.NO_SUCH_EMPLOYEE,
+                WriteResult.LOGIN_EXISTS);
+        mvc.perform(createEmployeeRequest(put("/users/e0001"))).andExpect(status().isCreated());
+        mvc.perform(createEmployeeRequest(put("/users/e0001")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("No such employee")));
+        mvc.perform(createEmployeeRequest(put("/users/e0001")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Employee login not unique")));
+    }
+
+    private static MockHttpServletRequestBuilder createEmployeeRequest(MockHttpServletRequestBuilder request) {
+        return request.param("id","e0001").param("login","hpotter").param("name","Harry Potter")
+                .param("salary","1234.00").param("startDate","2001-11-16");
+    }
+
+    private ResultActions awaitUploadJob(String id) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            ResultActions job = mvc.perform(get("/users/upload/jobs/" + id)).andExpect(status().isOk());
+            String status = JsonPath.read(job.andReturn().getResponse().getContentAsString(), "$.status");
+            if ("SUCCEEDED".equals(status) || "FAILED".equals(status)) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("upload job " + id + " did not finish");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.junit.jupiter.api.Test;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void decodesIdsAndValuesWithLineBreaks() {
+        Employee last = new Employee("e\n0001\n", "hpotter", "Harry\nPotter", 1234.00f, LocalDate.of(2001, 11, 16));
+
+        PageCursor cursor = PageCursor.decode(PageCursor.after(last, "name", false).encode());
+        assertTrue(cursor.matches("name", false));
+        assertEquals("e\n0001\n", cursor.getLastId());
+        assertEquals("Harry\nPotter", cursor.sortValue());
+
+        cursor = PageCursor.decode(PageCursor.after(last, "", true).encode());
+        assertTrue(cursor.matches("", true));
+        assertEquals("e\n0001\n", cursor.getLastId());
+        assertNull(cursor.sortValue());
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        for (String raw : new String[] {"salary\n1\ne0001\n1234.0", "salary\n1\n6\ne0001", "salary\n1\n0\n1234.0",
+                "salary\n1\n5\ne0001x"}) {
+            String token = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+            assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(token), raw);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package webapp.springboot.employeesalary.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import webapp.springboot.employeesalary.analytics.SalaryStatistics;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.util.StringJoiner;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(SalaryStatsController.class)
+class SalaryStatsControllerTest {
+
+    @MockBean
+    private EmployeesRepository repository;
+
+    @MockBean
+    private SalaryStatistics statistics;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void getHistogramCountsTheSalariesAboveTheLastBucketApart() throws Exception {
+        when(repository.summarizeSalaries(1000, Float.MAX_VALUE)).thenReturn(new SalarySummary(5, 16000, 1000.0, 9000.0));
+        when(repository.salaryHistogram(1000, Float.MAX_VALUE, 1000, 500, 3)).thenReturn(new long[] {2, 0, 3});
+
+        mvc.perform(get("/users/stats/histogram").param("minSalary", "1000").param("bucketWidth", "500")
+                        .param("buckets", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"bucketWidth\":500.0,\"buckets\":[" +
+                        "{\"from\":1000.0,\"to\":1500.0,\"count\":2}," +
+                        "{\"from\":1500.0,\"to\":2000.0,\"count\":0}],\"above\":3}"));
+    }
+
+    @Test
+    void getHistogramSplitsTheRangeOfTheSalaries() throws Exception {
+        when(repository.summarizeSalaries(0, Float.MAX_VALUE)).thenReturn(new SalarySummary(3, 6000, 1000.0, 3000.0));
+        when(repository.salaryHistogram(0, Float.MAX_VALUE, 1000, 1000, 2)).thenReturn(new long[] {1, 2});
+
+        mvc.perform(get("/users/stats/histogram").param("buckets", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"bucketWidth\":1000.0,\"buckets\":[" +
+                        "{\"from\":1000.0,\"to\":2000.0,\"count\":1}," +
+                        "{\"from\":2000.0,\"to\":3000.0,\"count\":2}],\"above\":0}"));
+    }
+
+    @Test
+    void getHistogramRejectsTooNarrowBuckets() throws Exception {
+        when(repository.summarizeSalaries(0, Float.MAX_VALUE)).thenReturn(new SalarySummary(2, 3000, 1000.0, 2000.0));
+
+        mvc.perform(get("/users/stats/histogram").param("bucketWidth", "1e-10"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("bucketWidth must be >= 0.002 for the salaries in range, found 1.0E-10")));
+        verify(repository, never()).salaryHistogram(anyFloat(), anyFloat(), anyDouble(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void getPercentiles() throws Exception {
+        when(repository.salaryPercentiles(eq(0f), eq(Float.MAX_VALUE), eq(0.5), eq(99.5 / 100)))
+                .thenReturn(new Double[] {1500.0, 4000.0});
+
+        mvc.perform(get("/users/stats/percentiles").param("p", "50,99.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"p50\":1500.0,\"p99.5\":4000.0}"));
+    }
+
+    @Test
+    void getPercentilesRejectsTooManyOrDuplicatePercentiles() throws Exception {
+        StringJoiner percentiles = new StringJoiner(",");
+        for (int p = 0; p <= 32; p++) {
+            percentiles.add(Integer.toString(p));
+        }
+        mvc.perform(get("/users/stats/percentiles").param("p", percentiles.toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("at most 32 percentiles, found 33")));
+
+        mvc.perform(get("/users/stats/percentiles").param("p", "50,90,50.0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("percentile 50 requested twice")));
+        verify(repository, never()).salaryPercentiles(anyFloat(), anyFloat(), any());
+    }
+}
@@ -0,0 +1,114 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRowReaderTest {
+
+    @Test
+    void readsQuotedAndUnquotedFields() throws IOException {
+        String csv = "id,login,name\r\n" +
+                "e0001,hpotter,\"Potter, Harry\"\r\n" +
+                "# a comment with a \" quote\n" +
+                "e0002,rwesley,Ron \"R\" Weasley\n" +
+                "e0003,\"\",\"Line\nbreak and \"\"quotes\"\"\"\n" +
+                "\n" +
+                "e0004,José,王小明";
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("e0001", "hpotter", "Potter, Harry"),
+                Arrays.asList("e0002", "rwesley", "Ron \"R\" Weasley"),
+                Arrays.asList("e0003", "", "Line\nbreak and \"quotes\""),
+                Arrays.asList(""),
+                Arrays.asList("e0004", "José", "王小明")), readRows(new ByteArrayInputStream(utf8(csv))));
+    }
+
+    @Test
+    void readsRowsAcrossBufferBoundaries() throws IOException {
+        StringBuilder csv = new StringBuilder("id,name\n");
+        List<List<String>> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String name = "Employee \"" + i + "\", the " + "x".repeat(i * 37 % 200);
+            csv.append('e').append(i).append(",\"").append(name.replace("\"", "\"\"")).append("\"\n");
+            expected.add(Arrays.asList("e" + i, name));
+        }
+        String longName = "y".repeat(200_000);
+        csv.append("e-long,").append(longName);
+        expected.add(Arrays.asList("e-long", longName));
+
+        assertEquals(expected, readRows(new ByteArrayInputStream(utf8(csv.toString()))));
+        assertEquals(expected, readRows(new TrickleInputStream(utf8(csv.toString()))));
+    }
+
+    @Test
+    void emptyInputHasNoRows() throws IOException {
+        CsvRowReader reader = new CsvRowReader(new ByteArrayInputStream(new byte[0]));
+        assertFalse(reader.skipLine());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void readsRowsInPlaceWithinTheirRange() throws IOException {
+        byte[] text = utf8("e0001,\"Potter, Harry\"\ne0002,Ron\n\"e0003\",\"Line\nbreak\"\n");
+        byte[] before = text.clone();
+        int from = "e0001,\"Potter, Harry\"\n".length();
+        int to = text.length - "\"e0003\",\"Line\nbreak\"\n".length();
+        CsvRowReader reader = new CsvRowReader();
+
+        reader.reset(text, 0, from);
+        assertEquals(Arrays.asList(Arrays.asList("e0001", "Potter, Harry")), readRows(reader));
+        assertSame(text, reader.buffer());
+        assertArrayEquals(Arrays.copyOfRange(before, from, text.length), Arrays.copyOfRange(text, from, text.length));
+
+        reader.reset(text, to, text.length);
+        assertEquals(Arrays.asList(Arrays.asList("e0003", "Line\nbreak")), readRows(reader));
+        reader.reset(text, from, to);
+        assertEquals(Arrays.asList(Arrays.asList("e0002", "Ron")), readRows(reader));
+    }
+
+    private static List<List<String>> readRows(InputStream csv) throws IOException {
+        CsvRowReader reader = new CsvRowReader(csv);
+        reader.skipLine();
+        return readRows(reader);
+    }
+
+    private static List<List<String>> readRows(CsvRowReader reader) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        while (reader.next()) {
+            List<String> row = new ArrayList<>();
+            for (int i = 0; i < reader.fields(); i++) {
+                row.add(reader.string(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * returns at most 7 bytes per read, so rows straddle many reads
+     */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+
+        TrickleInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 7));
+        }
+    }
+}
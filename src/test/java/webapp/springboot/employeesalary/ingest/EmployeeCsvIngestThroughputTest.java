@@ -0,0 +1,57 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import webapp.springboot.employeesalary.cache.EmployeeJsonCache;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures end to end upload throughput (parse, validate and batched upsert)
+ * against the embedded database. Run with {@code mvn test -Dthroughput=true};
+ * the 1M row file needs a larger heap, e.g. {@code -DargLine=-Xmx3g}.
+ */
+@DataJpaTest
+@Import({EmployeeCsvIngestService.class, EmployeeJsonCache.class})
+@EnabledIfSystemProperty(named = "throughput", matches = "true")
+class EmployeeCsvIngestThroughputTest {
+
+    @Autowired
+    private EmployeeCsvIngestService ingestService;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void ingest(int rows) throws Exception {
+        byte[] csv = generateCsv(rows);
+
+        long start = System.nanoTime();
+        int written = ingestService.ingest(new ByteArrayInputStream(csv));
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(rows, written);
+        assertEquals(rows, repository.count());
+        System.out.printf("upload of %,d rows (%,d bytes): %,d ms, %,.0f rows/sec%n",
+                rows, csv.length, elapsed / 1_000_000, rows / (elapsed / 1e9));
+    }
+
+    private static byte[] generateCsv(int rows) {
+        StringBuilder csv = new StringBuilder(rows * 48).append("id,login,name,salary,startDate\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append('e').append(i).append(",login").append(i).append(",Employee ").append(i).append(',')
+                    .append(i % 10_000).append(".50,")
+                    .append(i % 2 == 0 ? "2001-11-16" : "16-Nov-01").append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.Test;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmployeeExportFormatTest {
+
+    @Test
+    void everyFormatReadsBackAsTheSameEmployees() throws IOException {
+        List<Employee> employees = new ArrayList<>(Arrays.asList(
+                new Employee("#e1","hpotter","Potter, Harry",1234.5f, LocalDate.of(2001,11,16)),
+                new Employee("e2","\"ron\"","Line\nbreak and \"quotes\"",0.1f, LocalDate.of(1970,1,1)),
+                new Employee("e3","josé","王小明",3.4e38f, LocalDate.of(1969,12,31))));
+        // several batches of the binary format
+        for (int i = 0; i < 2 * EmployeeBinaryWriter.BATCH_SIZE + 1; i++) {
+            employees.add(new Employee("e" + (i + 4), "login" + i, "Employee " + i, i * 1.37f,
+                    LocalDate.of(2001,11,16).plusDays(i)));
+        }
+
+        for (EmployeeExportFormat format : EmployeeExportFormat.values()) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                byte[] export = export(format, gzip, employees);
+                assertEquals(rows(employees), rows(read(EmployeeExportFormat.decode(new ByteArrayInputStream(export)))),
+                        format + (gzip ? " with gzip" : ""));
+            }
+        }
+        assertTrue(export(EmployeeExportFormat.BINARY, false, employees).length
+                < export(EmployeeExportFormat.CSV, false, employees).length);
+    }
+
+    @Test
+    void csvIsExportedInTheUploadFormat() throws IOException {
+        byte[] export = export(EmployeeExportFormat.CSV, false, Arrays.asList(
+                new Employee("e1","hpotter","Potter, Harry",1234.5f, LocalDate.of(2001,11,16))));
+        assertEquals("id,login,name,salary,startDate\ne1,hpotter,\"Potter, Harry\",1234.5,2001-11-16\n",
+                new String(export, StandardCharsets.UTF_8));
+
+        byte[] csv = "id,login,name,salary,startDate\n".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(csv, EmployeeExportFormat.decode(new ByteArrayInputStream(csv)).readAllBytes());
+        assertEquals(-1, EmployeeExportFormat.decode(new ByteArrayInputStream(new byte[0])).read());
+    }
+
+    @Test
+    void emptyAndCorruptBinaryExports() throws IOException {
+        byte[] empty = export(EmployeeExportFormat.BINARY, false, new ArrayList<>());
+        assertEquals(0, read(EmployeeExportFormat.decode(new ByteArrayInputStream(empty))).size());
+
+        byte[] newer = empty.clone();
+        newer[EmployeeBinaryWriter.MAGIC.length]++;
+        InvalidEmployeeDataException e = assertThrows(InvalidEmployeeDataException.class,
+                () -> EmployeeExportFormat.decode(new ByteArrayInputStream(newer)));
+        assertEquals("Unsupported binary export version 2", e.getMessage());
+
+        byte[] corrupt = Arrays.copyOf(empty, empty.length);
+        corrupt[corrupt.length - 4] = -1; // a negative number of rows
+        assertThrows(InvalidEmployeeDataException.class,
+                () -> EmployeeExportFormat.decode(new ByteArrayInputStream(corrupt)).readAllBytes());
+    }
+
+    private static byte[] export(EmployeeExportFormat format, boolean gzip, List<Employee> employees) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes;
+        EmployeeExportWriter writer = format.writer(out);
+        for (Employee e : employees) {
+            writer.handle(e.getId(), e.getLogin(), e.getName(), e.getSalary(), e.getStartDate());
+        }
+        writer.finish();
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static List<String> rows(List<Employee> employees) {
+        return employees.stream().map(e -> Arrays.asList(e.getId(), e.getLogin(), e.getName(), e.getSalary(),
+                e.getStartDate()).toString()).collect(Collectors.toList());
+    }
+
+    private static List<Employee> read(InputStream csv) throws IOException {
+        List<Employee> employees = new ArrayList<>();
+        CsvRowReader reader = new CsvRowReader(csv);
+        assertTrue(reader.skipLine());
+        while (reader.next()) {
+            employees.add(EmployeeCsvIngestService.toEmployee(reader));
+        }
+        return employees;
+    }
+}
@@ -0,0 +1,56 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmployeeFieldsTest {
+
+    @Test
+    void parseDateAgreesWithTheFormatters() {
+        for (LocalDate date = LocalDate.of(1999, 1, 1); date.getYear() < 2005; date = date.plusDays(1)) {
+            for (DateTimeFormatter format : EmployeeFields.VALID_DATE_FORMATS) {
+                String text = format.format(date);
+                assertEquals(parseWithFormatters(text), EmployeeFields.parseDate(text), text);
+            }
+        }
+        String[] odd = {"2001-02-30", "2000-02-31", "31-Apr-01", "29-Feb-04", "2001-13-01", "2001-00-10",
+                "2001-01-00", "2001-01-32", "0000-01-01", "16-nov-01", "16-NOV-01", "6-Nov-01", "16-Nov-2001",
+                "12345-01-01", "2001-1-01", " 2001-01-01", "2001/01/01", "16/11/2001", "", "aaaa-bb-cc"};
+        for (String text : odd) {
+            assertEquals(parseWithFormatters(text), EmployeeFields.parseDate(text), text);
+        }
+        assertNull(EmployeeFields.parseDate(null));
+    }
+
+    @Test
+    void parseSalaryFromBytesAgreesWithFloatParsing() {
+        String[] salaries = {"0", "0.0", "1234.00", "1234.5", "19234.50", "0.01", "167772.16", "16777216",
+                "16777217", "99999999.99", "0.1234567891", "0.12345678912", "1.", ".5", "007", "1e3", " 12 "};
+        for (String salary : salaries) {
+            byte[] text = ("x," + salary + ",y").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(EmployeeFields.parseSalaryOrThrow(salary),
+                    EmployeeFields.parseSalaryOrThrow(text, 2, salary.length()), salary);
+        }
+        for (String salary : new String[]{"", ".", "-1", "1.2.3", "12a", "NaN", "Infinity", "1e39"}) {
+            byte[] text = salary.getBytes(StandardCharsets.US_ASCII);
+            assertThrows(InvalidEmployeeDataException.class,
+                    () -> EmployeeFields.parseSalaryOrThrow(text, 0, text.length), salary);
+        }
+    }
+
+    private static LocalDate parseWithFormatters(String text) {
+        for (DateTimeFormatter format : EmployeeFields.VALID_DATE_FORMATS) {
+            try {
+                return LocalDate.parse(text, format);
+            }
+            catch (DateTimeParseException e) {}
+        }
+        return null;
+    }
+}
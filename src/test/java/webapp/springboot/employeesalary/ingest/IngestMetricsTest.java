@@ -0,0 +1,41 @@
+package webapp.springboot.employeesalary.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestMetrics metrics = new IngestMetrics(registry);
+
+    @Test
+    void countsBytesReadThroughTheStream() throws IOException {
+        InputStream csv = metrics.counting(new ByteArrayInputStream(new byte[100]));
+        csv.read();
+        csv.read(new byte[60]);
+        csv.read(new byte[60]);
+        assertEquals(-1, csv.read());
+        assertEquals(100, registry.get("employees.ingest.bytes").counter().count());
+    }
+
+    @Test
+    void countsRowsByStageAndRejectionsByReason() {
+        metrics.validated(10);
+        metrics.written(4);
+        metrics.written(6);
+        metrics.rejected(new InvalidEmployeeDataException("Duplicate entry found with id 'e1'", "Duplicate id"));
+        metrics.rejected(new InvalidEmployeeDataException("Duplicate entry found with id 'e2'", "Duplicate id"));
+        metrics.rejected(new InvalidEmployeeDataException("Invalid salary"));
+
+        assertEquals(10, registry.get("employees.ingest.rows").tag("stage", "validated").counter().count());
+        assertEquals(10, registry.get("employees.ingest.rows").tag("stage", "written").counter().count());
+        assertEquals(2, registry.get("employees.ingest.rejected").tag("reason", "Duplicate id").counter().count());
+        assertEquals(1, registry.get("employees.ingest.rejected").tag("reason", "Invalid salary").counter().count());
+    }
+}
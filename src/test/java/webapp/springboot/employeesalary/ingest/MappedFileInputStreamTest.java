@@ -0,0 +1,47 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileInputStreamTest {
+
+    @Test
+    void readsAcrossRegions(@TempDir Path directory) throws IOException {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Path file = Files.write(directory.resolve("employees.csv"), content);
+
+        for (long regionSize : new long[]{7, 500, 1000, 4096}) {
+            try (InputStream in = MappedFileInputStream.open(file, regionSize)) {
+                ByteArrayOutputStream read = new ByteArrayOutputStream();
+                assertEquals(0, in.read());
+                byte[] buffer = new byte[64];
+                for (int n; (n = in.read(buffer, 0, buffer.length)) >= 0; ) {
+                    read.write(buffer, 0, n);
+                }
+                assertArrayEquals(Arrays.copyOfRange(content, 1, content.length), read.toByteArray());
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    @Test
+    void emptyFileHasNoBytes(@TempDir Path directory) throws IOException {
+        Path file = Files.write(directory.resolve("empty.csv"), new byte[0]);
+        try (InputStream in = MappedFileInputStream.open(file)) {
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(new byte[8], 0, 8));
+        }
+    }
+}
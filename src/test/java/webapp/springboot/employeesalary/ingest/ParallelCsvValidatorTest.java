@@ -0,0 +1,131 @@
+package webapp.springboot.employeesalary.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Blocks of 40 bytes hold one or two rows, so that every check spans
+ * several blocks, and logins are checked in chunks of 3 rows.
+ */
+class ParallelCsvValidatorTest {
+
+    private final EmployeesRepository repository = mock(EmployeesRepository.class);
+    private final Map<String,String> owners = new HashMap<>();
+    private ForkJoinPool pool;
+    private ParallelCsvValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findIdsByLogins(anyCollection())).thenAnswer(invocation -> {
+            Map<String,String> found = new HashMap<>();
+            for (String login : invocation.<Collection<String>>getArgument(0)) {
+                if (owners.containsKey(login)) {
+                    found.put(login, owners.get(login));
+                }
+            }
+            return found;
+        });
+        pool = new ForkJoinPool(3);
+        validator = new ParallelCsvValidator(pool, repository, 3, 40);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void validRowsAreReturnedInFileOrder() throws IOException {
+        StringBuilder csv = new StringBuilder("id,login,name,salary,startDate\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append('e').append(i).append(",login").append(i).append(",\"Employee\n").append(i).append("\",")
+                    .append(i).append(".5,2001-11-16\n");
+            if (i % 7 == 0) {
+                csv.append("# comment ").append(i).append('\n');
+            }
+        }
+        owners.put("login10", "e10");
+
+        List<Employee> employees = new ArrayList<>();
+        assertEquals(500, validator.validate(csv(csv.toString()), IngestProgress.NONE, employees));
+        assertEquals(500, employees.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("e" + i, employees.get(i).getId());
+            assertEquals("Employee\n" + i, employees.get(i).getName());
+        }
+        assertEquals(500, validator.validate(csv(csv.toString()), IngestProgress.NONE, null));
+    }
+
+    @Test
+    void findsDuplicatesAcrossBlocks() {
+        assertError("Duplicate entry found with id 'e1'", rows(
+                "e0,l0", "e1,l1", "e2,l2", "e3,l3", "e4,l4", "e5,l5", "e1,l6", "e7,l7", "e7,l8"));
+        assertError("Duplicate login found for employees with id 'e1' and 'e5'", rows(
+                "e0,l0", "e1,l1", "e2,l2", "e3,l3", "e4,l4", "e5,l1", "e1,l6", "e7,l7"));
+        assertEquals("Duplicate id", assertError("Duplicate entry found with id 'e3'", rows(
+                "e0,l0", "e1,l1", "e2,l2", "e3,l3", "e3,l1")).getReason());
+        assertEquals("Duplicate login", assertError("Duplicate login found for employees with id 'e0' and 'e1'",
+                rows("e0,l0", "e1,l0")).getReason());
+    }
+
+    @Test
+    void reportsTheFirstErrorOfTheFile() {
+        assertError("Invalid salary", rows("e0,l0", "e1,l1", "e2,l2,x", "e1,l3"));
+        assertError("Duplicate entry found with id 'e1'", rows("e0,l0", "e1,l1", "e1,l2", "e3,l3,x"));
+        assertError("Empty cell value found", rows("e0,l0", "e1,l1", "e2,l2", "e3,l3", "e4", "e5,l1"));
+    }
+
+    @Test
+    void reportsLoginsOfOtherEmployeesAtTheEndOfTheirChunk() {
+        owners.put("l1", "someone else");
+        // the chunk of rows 0-2 is checked before row 3
+        assertError("Employee login not unique", rows("e0,l0", "e1,l1", "e2,l2", "e3,l3,x"));
+        // but not before row 2
+        assertError("Invalid salary", rows("e0,l0", "e1,l1", "e2,l2,x", "e3,l3"));
+        assertError("Duplicate entry found with id 'e0'", rows("e0,l0", "e1,l1", "e0,l2"));
+        // a file that ends inside the chunk is checked at its end
+        assertError("Employee login not unique", rows("e0,l0", "e1,l1"));
+        owners.put("l1", "e1");
+        assertDoesNotThrow(() -> validator.validate(csv(rows("e0,l0", "e1,l1")), IngestProgress.NONE, null));
+    }
+
+    private InvalidEmployeeDataException assertError(String message, String csv) {
+        InvalidEmployeeDataException e = assertThrows(InvalidEmployeeDataException.class,
+                () -> validator.validate(csv(csv), IngestProgress.NONE, new ArrayList<>()));
+        assertEquals(message, e.getMessage());
+        return e;
+    }
+
+    /**
+     * @param rows id and login of every row, followed by ,x for an invalid salary
+     */
+    private static String rows(String... rows) {
+        return "id,login,name,salary,startDate\n" + List.of(rows).stream()
+                .map(row -> row.endsWith(",x") ? row.substring(0, row.length() - 2) + ",name,x,2001-11-16"
+                        : row.indexOf(',') < 0 ? row + ",,name,1.0,2001-11-16" : row + ",name,1.0,2001-11-16")
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static ByteArrayInputStream csv(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,209 @@
+package webapp.springboot.employeesalary.persistent.changelog;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeeChange;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Changes are only appended when a transaction commits, so unlike the other
+ * repository tests these ones commit and clean up after themselves. Raises
+ * and bulk deletes of more than one employee append their changes set-wise.
+ */
+@DataJpaTest
+@Import({EmployeeChangeLog.class, EmployeeChangeLogTest.SlowListener.class})
+@TestPropertySource(properties = "employees.bulk.max-listed-changes=1")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmployeeChangeLogTest {
+
+    /**
+     * records the ids of the committed changes, slowly once the second write
+     * of a transaction is delivered
+     */
+    static class SlowListener {
+
+        private final List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        private volatile CountDownLatch delivering;
+
+        void reset() {
+            ids.clear();
+            delivering = new CountDownLatch(1);
+        }
+
+        @TransactionalEventListener
+        void onEmployeesChanged(EmployeesChangedEvent event) throws InterruptedException {
+            for (EmployeeChange change : event.getChanges()) {
+                if ("e0002".equals(change.getId())) {
+                    delivering.countDown();
+                    Thread.sleep(300);
+                }
+                ids.add(change.getId());
+            }
+        }
+    }
+
+    @Autowired
+    private SlowListener listener;
+
+    @Autowired
+    private EmployeeChangeLog changeLog;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    private final Employee harry = new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16));
+    private final Employee ron = new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16));
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        listener.reset();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM employees");
+        jdbc.update("DELETE FROM employee_changes");
+    }
+
+    @Test
+    void listsCommittedChangesInOrder() {
+        transaction.executeWithoutResult(status -> {
+            repository.upsertEmployees(Arrays.asList(harry, ron));
+            repository.updateEmployee(new Employee("e0001","hpotter","Harry Potter",1500.00f, LocalDate.of(2001,11,16)));
+        });
+        repository.deleteEmployee("e0002");
+        transaction.executeWithoutResult(status -> {
+            repository.deleteEmployee("e0001");
+            status.setRollbackOnly();
+        });
+
+        List<String> changes = read(0, 0);
+        assertEquals(Arrays.asList("INSERT e0001 1234.0", "INSERT e0002 19234.5", "UPDATE e0001 1500.0",
+                "DELETE e0002 null"), changes);
+        assertTrue(repository.existsByEmployeeId("e0001"));
+    }
+
+    @Test
+    void readsAfterTheGivenSequenceNumber() {
+        repository.upsertEmployees(Arrays.asList(harry, ron));
+        repository.raiseSalaries(0, Float.MAX_VALUE, null, 10);
+        List<Long> seqs = new ArrayList<>();
+        changeLog.read(0, 0, (seq, op, id, after) -> seqs.add(seq));
+        assertEquals(4, seqs.size());
+        for (int i = 1; i < seqs.size(); i++) {
+            assertTrue(seqs.get(i) > seqs.get(i - 1));
+        }
+
+        assertEquals(Arrays.asList("UPDATE e0001 1357.4", "UPDATE e0002 21157.95"), read(seqs.get(1), 0));
+        assertEquals(Arrays.asList("UPDATE e0001 1357.4"), read(seqs.get(1), 1));
+        assertEquals(0, read(seqs.get(3), 0).size());
+    }
+
+    @Test
+    void appendsSetWiseWritesInTheOrderOfTheTransaction() throws Exception {
+        repository.upsertEmployees(Arrays.asList(harry, ron));
+        transaction.executeWithoutResult(status -> {
+            repository.updateEmployee(new Employee("e0001","hpotter","Harry Potter",1500.00f, LocalDate.of(2001,11,16)));
+            repository.raiseSalaries(0, Float.MAX_VALUE, null, 10);
+            repository.deleteEmployees(Arrays.asList("e0002", "e0003"));
+        });
+        assertEquals(Arrays.asList("INSERT e0001 1234.0", "INSERT e0002 19234.5", "UPDATE e0001 1500.0",
+                "UPDATE e0001 1650.0", "UPDATE e0002 21157.95", "DELETE e0002 null"), read(0, 0));
+
+        transaction.executeWithoutResult(status -> {
+            repository.raiseSalaries(0, Float.MAX_VALUE, null, 10);
+            repository.upsertEmployees(Arrays.asList(ron));
+            status.setRollbackOnly();
+        });
+        assertEquals(6, read(0, 0).size());
+        // the rolled back transaction released the lock it took for the raise
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            writer.submit(() -> repository.upsertEmployees(Arrays.asList(ron))).get(10, TimeUnit.SECONDS);
+        }
+        finally {
+            writer.shutdownNow();
+        }
+        assertEquals(7, read(0, 0).size());
+    }
+
+    @Test
+    void betweenCommitsHoldsBackCommits() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<?>> write = new ArrayList<>();
+            changeLog.betweenCommits(() -> {
+                write.add(writer.submit(() -> repository.upsertEmployees(Arrays.asList(harry))));
+                assertThrows(TimeoutException.class, () -> write.get(0).get(500, TimeUnit.MILLISECONDS));
+                assertFalse(repository.existsByEmployeeId("e0001"));
+            });
+            write.get(0).get(10, TimeUnit.SECONDS);
+            assertTrue(repository.existsByEmployeeId("e0001"));
+        }
+        finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void betweenCommitsWaitsForEveryEventOfACommit() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> write = writer.submit(() -> transaction.executeWithoutResult(status -> {
+                repository.upsertEmployees(Arrays.asList(harry));
+                repository.upsertEmployees(Arrays.asList(ron));
+            }));
+            assertTrue(listener.delivering.await(10, TimeUnit.SECONDS));
+            List<String> seen = new ArrayList<>();
+            changeLog.betweenCommits(() -> seen.addAll(listener.ids));
+            assertEquals(Arrays.asList("e0001", "e0002"), seen);
+            write.get(10, TimeUnit.SECONDS);
+        }
+        finally {
+            writer.shutdownNow();
+        }
+    }
+
+    private List<String> read(long since, int limit) {
+        List<String> changes = new ArrayList<>();
+        changeLog.read(since, limit, (seq, op, id, after) ->
+                changes.add(op + " " + id + " " + (null == after ? null : after.getSalary())));
+        return changes;
+    }
+}
@@ -0,0 +1,173 @@
+package webapp.springboot.employeesalary.persistent.columnar;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.TestPropertySource;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The column store must answer like the database. Test transactions are not
+ * read only, so the repository itself still queries the database here.
+ */
+@DataJpaTest
+@Import({EmployeeColumnStore.class, EmployeeColumnStoreTest.ChangeForwarder.class})
+@TestPropertySource(properties = "employees.columnar.enabled=true")
+class EmployeeColumnStoreTest {
+
+    private static final String[] NAMES = {"Harry Potter", "Ron Weasley", "Hermione Granger", "Müller, José", "王小明"};
+    private static final String[] SORT_COLUMNS = {"", "name", "salary", "startDate"};
+
+    /**
+     * applies the changes of the uncommitted test transaction to the store, imported
+     * rather than scanned, so that benchmarks with the test classes never pick it up
+     */
+    static class ChangeForwarder {
+
+        @Autowired
+        private EmployeeColumnStore store;
+
+        @EventListener
+        void onEmployeesChanged(EmployeesChangedEvent event) {
+            store.onEmployeesChanged(event);
+        }
+    }
+
+    @Autowired
+    private EmployeeColumnStore store;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void load() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            employees.add(randomEmployee(i));
+        }
+        repository.upsertEmployees(employees);
+        store.rebuild();
+    }
+
+    @Test
+    void answersLikeTheDatabase() {
+        assertEquals(500, store.size());
+        assertSameAnswers();
+    }
+
+    @Test
+    void followsWrites() {
+        for (int i = 0; i < 300; i++) {
+            int id = random.nextInt(700);
+            switch (random.nextInt(3)) {
+                case 0: repository.deleteEmployee(id(id)); break;
+                case 1: repository.updateEmployee(randomEmployee(id)); break;
+                default: repository.upsertEmployees(List.of(randomEmployee(id)));
+            }
+        }
+        assertEquals(repository.count(), store.size());
+        assertSameAnswers();
+    }
+
+    private void assertSameAnswers() {
+        // managed employees would hide the values written by native statements
+        entityManager.clear();
+        assertEquals(ids(repository.fetchEmployee(0, Float.MAX_VALUE, 0, 0, "", true)).stream().sorted().collect(Collectors.toList()),
+                ids(store.fetchEmployee(0, Float.MAX_VALUE, 0, 0, "", true)).stream().sorted().collect(Collectors.toList()));
+        for (String sortBy : SORT_COLUMNS) {
+            for (boolean ascending : new boolean[]{true, false}) {
+                if (!sortBy.isEmpty()) {
+                    assertEquals(sortValues(repository.fetchEmployee(1000, 3000, 0, 0, sortBy, ascending), sortBy),
+                            sortValues(store.fetchEmployee(1000, 3000, 0, 0, sortBy, ascending), sortBy));
+                    assertEquals(sortValues(repository.fetchEmployee(1000, 3000, 20, 35, sortBy, ascending), sortBy),
+                            sortValues(store.fetchEmployee(1000, 3000, 20, 35, sortBy, ascending), sortBy));
+                }
+                assertPagesMatch(sortBy, ascending);
+            }
+        }
+
+        SalarySummary expected = repository.summarizeSalaries(500, 4000);
+        SalarySummary actual = store.summarizeSalaries(500, 4000);
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum(), 1e-6);
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertNull(store.summarizeSalaries(6000, 7000).getMin());
+
+        Map<Integer,SalarySummary> expectedYears = repository.summarizeSalariesByStartYear(0, 4000);
+        Map<Integer,SalarySummary> actualYears = store.summarizeSalariesByStartYear(0, 4000);
+        assertEquals(new ArrayList<>(expectedYears.keySet()), new ArrayList<>(actualYears.keySet()));
+        expectedYears.forEach((year, summary) -> assertEquals(summary.getCount(), actualYears.get(year).getCount()));
+
+        assertArrayEquals(repository.salaryHistogram(500, 4000, 500, 333.3, 10),
+                store.salaryHistogram(500, 4000, 500, 333.3, 10));
+        assertArrayEquals(repository.salaryHistogram(500, 4000, 500, 1e-10, 10),
+                store.salaryHistogram(500, 4000, 500, 1e-10, 10));
+        Double[] expectedPercentiles = repository.salaryPercentiles(500, 4000, 0, 0.25, 0.5, 0.9, 1);
+        Double[] actualPercentiles = store.salaryPercentiles(500, 4000, 0, 0.25, 0.5, 0.9, 1);
+        for (int i = 0; i < expectedPercentiles.length; i++) {
+            assertEquals(expectedPercentiles[i], actualPercentiles[i], 1e-3);
+        }
+        assertNull(store.salaryPercentiles(6000, 7000, 0.5)[0]);
+    }
+
+    private void assertPagesMatch(String sortBy, boolean ascending) {
+        Object lastValue = null;
+        String lastId = null;
+        while (true) {
+            List<Employee> expected = repository.fetchEmployeeAfter(1000, 3000, 40, sortBy, ascending, lastValue, lastId);
+            List<Employee> actual = store.fetchEmployeeAfter(1000, 3000, 40, sortBy, ascending, lastValue, lastId);
+            assertEquals(ids(expected), ids(actual), () -> "sorted by '" + sortBy + "'");
+            if (expected.size() < 40) {
+                return;
+            }
+            Employee last = expected.get(expected.size() - 1);
+            lastId = last.getId();
+            lastValue = "name".equals(sortBy) ? last.getName() : "salary".equals(sortBy) ? (Object) last.getSalary()
+                    : "startDate".equals(sortBy) ? last.getStartDate() : null;
+        }
+    }
+
+    private Employee randomEmployee(int i) {
+        // few distinct salaries and dates, so that the sort values tie and the id decides
+        return new Employee(id(i), "login" + i + "-" + random.nextInt(3), NAMES[random.nextInt(NAMES.length)],
+                random.nextInt(80) * 50.5f, LocalDate.of(1999 + random.nextInt(5), 1 + random.nextInt(12), 1));
+    }
+
+    private static String id(int i) {
+        return "e" + i;
+    }
+
+    private static List<String> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * the database orders ties arbitrarily with an offset page, so only the sort values must match
+     */
+    private static List<Object> sortValues(List<Employee> employees, String sortBy) {
+        return employees.stream().map(e -> "name".equals(sortBy) ? e.getName() : "salary".equals(sortBy)
+                ? (Object) e.getSalary() : e.getStartDate()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,143 @@
+package webapp.springboot.employeesalary.persistent.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.TestPropertySource;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesChangedEvent;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The salary index must answer like the database. Test transactions are not
+ * read only, so the repository itself still queries the database here.
+ */
+@DataJpaTest
+@Import({SalaryIndex.class, SalaryIndexTest.ChangeForwarder.class})
+@TestPropertySource(properties = "employees.salary-index.enabled=true")
+class SalaryIndexTest {
+
+    /**
+     * applies the changes of the uncommitted test transaction to the index, imported
+     * rather than scanned, so that benchmarks with the test classes never pick it up
+     */
+    static class ChangeForwarder {
+
+        @Autowired
+        private SalaryIndex index;
+
+        @EventListener
+        void onEmployeesChanged(EmployeesChangedEvent event) {
+            index.onEmployeesChanged(event);
+        }
+    }
+
+    @Autowired
+    private SalaryIndex index;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void load() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            employees.add(randomEmployee(i));
+        }
+        repository.upsertEmployees(employees);
+        index.rebuild();
+    }
+
+    @Test
+    void answersLikeTheDatabase() {
+        assertEquals(300, index.size());
+        assertSameAnswers();
+    }
+
+    @Test
+    void includesMinSalaryAndExcludesMaxSalary() {
+        List<Employee> employees = index.fetchEmployee(1010, 2020, 0, 0, true);
+        assertTrue(employees.stream().allMatch(e -> e.getSalary() >= 1010 && e.getSalary() < 2020));
+        assertEquals(1010, employees.get(0).getSalary());
+        assertEquals(1919, employees.get(employees.size() - 1).getSalary());
+        assertEquals(0, index.fetchEmployee(2020, 1010, 0, 0, true).size());
+    }
+
+    @Test
+    void followsWrites() {
+        for (int i = 0; i < 200; i++) {
+            int id = random.nextInt(400);
+            switch (random.nextInt(5)) {
+                case 0: repository.deleteEmployee(id(id)); break;
+                case 1: repository.updateEmployee(randomEmployee(id)); break;
+                case 2: repository.raiseSalaries(id * 10, id * 10 + 500, null, 1.5); break;
+                case 3: repository.deleteEmployees(List.of(id(id), id(id + 1))); break;
+                default: repository.upsertEmployees(List.of(randomEmployee(id)));
+            }
+        }
+        assertEquals(repository.count(), index.size());
+        assertSameAnswers();
+    }
+
+    private void assertSameAnswers() {
+        // managed employees would hide the values written by native statements
+        entityManager.clear();
+        for (boolean ascending : new boolean[]{true, false}) {
+            for (int[] page : new int[][]{{0, 0}, {10, 0}, {25, 40}, {500, 290}}) {
+                assertEquals(salaries(repository.fetchEmployee(500, 3000, page[0], page[1], "salary", ascending)),
+                        salaries(index.fetchEmployee(500, 3000, page[0], page[1], ascending)));
+            }
+            Float lastSalary = null;
+            String lastId = null;
+            while (true) {
+                List<Employee> expected = repository.fetchEmployeeAfter(500, 3000, 30, "salary", ascending,
+                        lastSalary, lastId);
+                assertEquals(ids(expected), ids(index.fetchEmployeeAfter(500, 3000, 30, ascending, lastSalary, lastId)));
+                if (expected.size() < 30) {
+                    break;
+                }
+                lastSalary = expected.get(expected.size() - 1).getSalary();
+                lastId = expected.get(expected.size() - 1).getId();
+            }
+        }
+    }
+
+    private Employee randomEmployee(int i) {
+        // few distinct salaries, so that they tie and the id decides
+        return new Employee(id(i), "login" + i + "-" + random.nextInt(3), "Employee " + i,
+                random.nextInt(40) * 101f, LocalDate.of(2000, 1, 1).plusDays(random.nextInt(1000)));
+    }
+
+    private static String id(int i) {
+        return "e" + i;
+    }
+
+    private static List<String> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * the database orders ties arbitrarily with an offset page, so only the salaries must match
+     */
+    private static List<Float> salaries(List<Employee> employees) {
+        return employees.stream().map(Employee::getSalary).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,88 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs EXPLAIN on every query shape generated by {@link EmployeesRepositoryImpl}
+ * and fails if any of them has to fall back to a full table scan.
+ */
+@DataJpaTest
+class EmployeesQueryPlanTest {
+
+    private static final String[] SORT_COLUMNS = {"","name","salary","startDate"};
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            employees.add(new Employee("e"+i,"login"+i,"Employee "+i,
+                    i % 4000, LocalDate.of(2001,11,16).plusDays(i)));
+        }
+        repository.upsertEmployees(employees);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    static Stream<Arguments> sortOrders() {
+        Stream.Builder<Arguments> arguments = Stream.builder();
+        for (String sortBy : SORT_COLUMNS) {
+            arguments.add(Arguments.of(sortBy, true)).add(Arguments.of(sortBy, false));
+        }
+        return arguments.build();
+    }
+
+    @ParameterizedTest
+    @MethodSource("sortOrders")
+    void fetchEmployeeUsesIndex(String sortBy, boolean ascending) {
+        assertNoTableScan(EmployeesRepositoryImpl.fetchEmployeeSql(false, sortBy, ascending), 100f, 200f);
+        assertNoTableScan(EmployeesRepositoryImpl.fetchEmployeeSql(true, sortBy, ascending), 100f, 200f, 10, 20);
+    }
+
+    @ParameterizedTest
+    @MethodSource("sortOrders")
+    void fetchEmployeeAfterUsesIndex(String sortBy, boolean ascending) {
+        assertNoTableScan(EmployeesRepositoryImpl.fetchEmployeeAfterSql(sortBy, ascending, false), 100f, 200f, 10);
+
+        Object last = sortValue(sortBy);
+        Object[] parameters = "".equals(sortBy) ? new Object[]{100f, 200f, "e150", 10}
+                : new Object[]{100f, 200f, last, last, "e150", 10};
+        assertNoTableScan(EmployeesRepositoryImpl.fetchEmployeeAfterSql(sortBy, ascending, true), parameters);
+    }
+
+    private void assertNoTableScan(String sql, Object... parameters) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+        assertFalse(plan.contains("tableScan"), () -> "table scan for " + sql + "\n" + plan);
+    }
+
+    private static Object sortValue(String sortBy) {
+        switch (sortBy) {
+            case "name": return "Employee 150";
+            case "salary": return 150f;
+            default: return Date.valueOf(LocalDate.of(2002,4,15));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package webapp.springboot.employeesalary.persistent.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import webapp.springboot.employeesalary.analytics.SalarySummary;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(EmployeesRepositoryImplTest.ChangeRecorder.class)
+class EmployeesRepositoryImplTest {
+
+    @TestComponent
+    static class ChangeRecorder {
+
+        final List<EmployeeChange> changes = new ArrayList<>();
+
+        @EventListener
+        void onEmployeesChanged(EmployeesChangedEvent event) {
+            changes.addAll(event.getChanges());
+        }
+    }
+
+    @Autowired
+    private ChangeRecorder recorder;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void upsertEmployees() {
+        repository.upsertEmployees(Arrays.asList(
+                new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16)),
+                new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16))));
+        int written = repository.upsertEmployees(Collections.singletonList(
+                new Employee("e0001","hpotter","Harry Potter",1500.00f, LocalDate.of(2001,11,16))));
+        entityManager.clear();
+
+        assertEquals(1, written);
+        assertEquals(2, repository.count());
+        assertEquals(1500.00f, repository.findById("e0001").get().getSalary());
+        assertEquals(19234.50f, repository.findById("e0002").get().getSalary());
+    }
+
+    @Test
+    void conflictingWritesChangeNothing() {
+        Employee harry = new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16));
+        Employee ron = new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16));
+        repository.insertEmployee(harry);
+        repository.insertEmployee(ron);
+        recorder.changes.clear();
+
+        assertEquals(WriteResult.ID_EXISTS, repository.insertEmployee(
+                new Employee("e0001","hgranger","Hermione Granger",1.00f, LocalDate.of(2001,11,16))));
+        assertEquals(WriteResult.LOGIN_EXISTS, repository.insertEmployee(
+                new Employee("e0003","hpotter","Hermione Granger",1.00f, LocalDate.of(2001,11,16))));
+        assertEquals(WriteResult.LOGIN_EXISTS, repository.updateEmployee(
+                new Employee("e0002","hpotter","Ron Weasley",1.00f, LocalDate.of(2001,11,16))));
+        // keeping one's own login is no conflict
+        assertEquals(WriteResult.WRITTEN, repository.updateEmployee(
+                new Employee("e0002","rwesley","Ron Weasley",2.00f, LocalDate.of(2001,11,16))));
+        entityManager.clear();
+
+        assertEquals(1, recorder.changes.size());
+        assertEquals(2, repository.count());
+        assertEquals(1234.00f, repository.findById("e0001").get().getSalary());
+        assertEquals(2.00f, repository.findById("e0002").get().getSalary());
+    }
+
+    @Test
+    void writesPublishOldAndNewValues() {
+        Employee harry = new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16));
+        Employee raised = new Employee("e0001","hpotter","Harry Potter",1500.00f, LocalDate.of(2001,11,16));
+        recorder.changes.clear();
+        assertEquals(WriteResult.WRITTEN, repository.insertEmployee(harry));
+        assertEquals(WriteResult.WRITTEN, repository.updateEmployee(raised));
+        assertTrue(repository.deleteEmployee("e0001"));
+        assertFalse(repository.deleteEmployee("e0001"));
+        assertEquals(WriteResult.NO_SUCH_EMPLOYEE, repository.updateEmployee(raised));
+
+        assertEquals(3, recorder.changes.size());
+        assertNull(recorder.changes.get(0).getBefore());
+        assertEquals(1234.00f, recorder.changes.get(0).getAfter().getSalary());
+        assertEquals(1234.00f, recorder.changes.get(1).getBefore().getSalary());
+        assertEquals(1500.00f, recorder.changes.get(1).getAfter().getSalary());
+        assertEquals(1500.00f, recorder.changes.get(2).getBefore().getSalary());
+        assertNull(recorder.changes.get(2).getAfter());
+    }
+
+    @Test
+    void upsertEmployeesPublishesOldValues() {
+        repository.upsertEmployees(Collections.singletonList(
+                new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16))));
+        recorder.changes.clear();
+        repository.upsertEmployees(Arrays.asList(
+                new Employee("e0001","hpotter","Harry Potter",1500.00f, LocalDate.of(2001,11,16)),
+                new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16))));
+
+        assertEquals(1234.00f, recorder.changes.get(0).getBefore().getSalary());
+        assertNull(recorder.changes.get(1).getBefore());
+        assertEquals(19234.50f, recorder.changes.get(1).getAfter().getSalary());
+    }
+
+    @Test
+    void bulkWritesChangeTheWholeSetAtOnce() {
+        repository.upsertEmployees(Arrays.asList(
+                new Employee("e0001","hpotter","Harry Potter",1234.57f, LocalDate.of(2001,11,16)),
+                new Employee("e0002","rwesley","Ron Weasley",1999.99f, LocalDate.of(2005,1,1)),
+                new Employee("e0003","hgranger","Hermione Granger",2000.00f, LocalDate.of(2001,11,16)),
+                new Employee("e0004","dmalfoy","Draco Malfoy",3333.33f, LocalDate.of(1999,9,1))));
+        recorder.changes.clear();
+
+        assertEquals(1, repository.raiseSalaries(1000, 2000, LocalDate.of(2002,1,1), 3.5));
+        assertEquals(3, repository.raiseSalaries(0, 3000, null, 3.5));
+        assertEquals(0, repository.raiseSalaries(5000, 6000, null, 3.5));
+        entityManager.clear();
+        // the published salaries are exactly the ones written
+        assertEquals(4, recorder.changes.size());
+        for (EmployeeChange change : recorder.changes.subList(1, 4)) {
+            assertEquals(change.getAfter().getSalary(), repository.findById(change.getId()).get().getSalary());
+        }
+        assertEquals(3333.33f, repository.findById("e0004").get().getSalary());
+        assertEquals((float) ((float) (1234.57f * 1.035) * 1.035), repository.findById("e0001").get().getSalary());
+
+        recorder.changes.clear();
+        assertEquals(2, repository.deleteEmployees(Arrays.asList("e0001","e0004","e0009")));
+        assertEquals(0, repository.deleteEmployees(Collections.singletonList("e0001")));
+        assertEquals(2, repository.count());
+        assertFalse(repository.existsByEmployeeId("e0004"));
+        assertEquals(2, recorder.changes.size());
+        assertTrue(recorder.changes.stream().allMatch(change -> null == change.getAfter()));
+    }
+
+    @Test
+    void listStatementsAreBuiltOnce() {
+        assertSame(EmployeesRepositoryImpl.fetchEmployeeSql(true, "name", false),
+                EmployeesRepositoryImpl.fetchEmployeeSql(true, "name", false));
+        assertSame(EmployeesRepositoryImpl.fetchEmployeeSql(false, null, true),
+                EmployeesRepositoryImpl.fetchEmployeeSql(false, "", true));
+        assertThrows(InvalidDataAccessApiUsageException.class,
+                () -> repository.fetchEmployee(0, 100, 10, 0, "login; DROP TABLE employees", true));
+    }
+
+    @Test
+    void findIdsByLogins() {
+        repository.upsertEmployees(Collections.singletonList(
+                new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16))));
+
+        assertEquals(Collections.singletonMap("hpotter","e0001"),
+                repository.findIdsByLogins(Arrays.asList("hpotter","rwesley")));
+    }
+
+    @Test
+    void fetchEmployeeAfterWalksAllPagesInOrder() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            employees.add(new Employee(String.format("e%04d", i),"login"+i,"Employee "+i,
+                    (i % 7) * 100, LocalDate.of(2001,11,16)));
+        }
+        repository.upsertEmployees(employees);
+
+        List<String> expected = repository.fetchEmployee(0, 4000, 0, 0, "salary", false).stream()
+                .sorted((l, r) -> l.getSalary() != r.getSalary() ? Float.compare(r.getSalary(), l.getSalary())
+                        : r.getId().compareTo(l.getId()))
+                .map(Employee::getId).collect(Collectors.toList());
+        List<String> paged = new ArrayList<>();
+        List<Employee> page = repository.fetchEmployeeAfter(0, 4000, 4, "salary", false, null, null);
+        while (!page.isEmpty()) {
+            page.forEach(e -> paged.add(e.getId()));
+            Employee last = page.get(page.size()-1);
+            page = repository.fetchEmployeeAfter(0, 4000, 4, "salary", false, last.getSalary(), last.getId());
+        }
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void streamEmployeeMatchesFetchEmployee() {
+        repository.upsertEmployees(Arrays.asList(
+                new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16)),
+                new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16)),
+                new Employee("e0003","ssnape","Severus Snape",4000.00f, LocalDate.of(2001,11,16))));
+        List<String> streamed = new ArrayList<>();
+        repository.streamEmployee(0, 20000, 0, 0, "salary", false,
+                (id, login, name, salary, startDate) -> streamed.add(id+" "+salary+" "+startDate));
+
+        assertEquals(repository.fetchEmployee(0, 20000, 0, 0, "salary", false).stream()
+                .map(e -> e.getId()+" "+e.getSalary()+" "+e.getStartDate()).collect(Collectors.toList()), streamed);
+    }
+
+    @Test
+    void salaryAggregates() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            employees.add(new Employee("e"+i,"login"+i,"Employee "+i,
+                    i * 10, LocalDate.of(2000 + i % 2,11,16)));
+        }
+        repository.upsertEmployees(employees);
+
+        SalarySummary summary = repository.summarizeSalaries(0, Float.MAX_VALUE);
+        assertEquals(100, summary.getCount());
+        assertEquals(50500, summary.getSum());
+        assertEquals(10, summary.getMin());
+        assertEquals(1000, summary.getMax());
+        assertEquals(505, summary.getMean());
+
+        assertArrayEquals(new long[]{10, 10, 10, 10, 10, 10, 10, 10, 10, 10},
+                repository.salaryHistogram(0, Float.MAX_VALUE, 10, 99, 10));
+        assertArrayEquals(new long[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 99},
+                repository.salaryHistogram(0, Float.MAX_VALUE, 10, 1e-10, 10));
+        assertArrayEquals(new Double[]{505.0, 1000.0},
+                repository.salaryPercentiles(0, Float.MAX_VALUE, 0.5, 1));
+
+        Map<Integer,SalarySummary> byYear = repository.summarizeSalariesByStartYear(0, 500);
+        assertEquals(Arrays.asList(2000, 2001), new ArrayList<>(byYear.keySet()));
+        assertEquals(24, byYear.get(2000).getCount());
+        assertEquals(25, byYear.get(2001).getCount());
+        assertEquals(0, repository.summarizeSalaries(5000, 6000).getCount());
+        assertNull(repository.summarizeSalaries(5000, 6000).getMean());
+    }
+}
@@ -0,0 +1,91 @@
+package webapp.springboot.employeesalary.startup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import webapp.springboot.employeesalary.analytics.SalaryStatistics;
+import webapp.springboot.employeesalary.persistent.changelog.EmployeeChangeLog;
+import webapp.springboot.employeesalary.persistent.columnar.EmployeeColumnStore;
+import webapp.springboot.employeesalary.persistent.entity.Employee;
+import webapp.springboot.employeesalary.persistent.index.SalaryIndex;
+import webapp.springboot.employeesalary.persistent.repository.EmployeesRepository;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The read models are loaded once the application is ready and then follow
+ * the committed writes, so these tests commit and clean up after themselves.
+ * Raises and bulk deletes of more than one employee reload them.
+ */
+@DataJpaTest
+@Import({BackgroundWarmUp.class, EmployeeChangeLog.class, SalaryStatistics.class, SalaryIndex.class,
+        EmployeeColumnStore.class})
+@TestPropertySource(properties = {"employees.warm-up.background=true", "employees.salary-index.enabled=true",
+        "employees.columnar.enabled=true", "employees.bulk.max-listed-changes=1"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BackgroundWarmUpTest {
+
+    @Autowired
+    private BackgroundWarmUp warmUp;
+
+    @Autowired
+    private SalaryStatistics statistics;
+
+    @Autowired
+    private SalaryIndex index;
+
+    @Autowired
+    private EmployeeColumnStore columns;
+
+    @Autowired
+    private EmployeesRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final Employee harry = new Employee("e0001","hpotter","Harry Potter",1234.00f, LocalDate.of(2001,11,16));
+    private final Employee ron = new Employee("e0002","rwesley","Ron Weasley",19234.50f, LocalDate.of(2001,11,16));
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM employees");
+        jdbc.update("DELETE FROM employee_changes");
+    }
+
+    @Test
+    void loadsTheReadModelsOnceReadyAndFollowsTheWrites() throws InterruptedException {
+        warmUp.await();
+        assertTrue(statistics.isLoaded());
+        assertTrue(index.isLoaded());
+        assertTrue(columns.isLoaded());
+
+        repository.upsertEmployees(Arrays.asList(harry, ron));
+        repository.deleteEmployee("e0001");
+
+        assertEquals(1, statistics.snapshot().getSummary().getCount());
+        assertEquals(1, index.size());
+        assertEquals(1, columns.size());
+
+        repository.upsertEmployees(Arrays.asList(harry));
+        repository.raiseSalaries(0, Float.MAX_VALUE, null, 10);
+        float raised = (float) (1234.00f * 1.1) + (float) (19234.50f * 1.1);
+        assertEquals(2, statistics.snapshot().getSummary().getCount());
+        assertEquals(raised, statistics.snapshot().getSummary().getSum(), 0.01);
+        assertEquals(raised, columns.summarizeSalaries(0, Float.MAX_VALUE).getSum(), 0.01);
+        assertEquals((float) (1234.00f * 1.1), index.range(0, 2000, 0, 0, true).findFirst().get().getSalary());
+
+        repository.deleteEmployees(Arrays.asList("e0001", "e0002"));
+        assertEquals(0, statistics.snapshot().getSummary().getCount());
+        assertEquals(0, index.size());
+        assertEquals(0, columns.size());
+    }
+}